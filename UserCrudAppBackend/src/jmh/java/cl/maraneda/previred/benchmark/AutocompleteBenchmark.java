@@ -0,0 +1,58 @@
+package cl.maraneda.previred.benchmark;
+
+import cl.maraneda.previred.util.PrefixIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sugerencias desde el indice de prefijos con 200.000 nombres distintos, para prefijos de 1 a 4 letras
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AutocompleteBenchmark {
+    private static final int NOMBRES = 200_000;
+
+    @Param({"m", "ma", "mar", "mari"})
+    private String prefijo;
+
+    private PrefixIndex indice;
+
+    @Setup
+    public void setup() {
+        indice = new PrefixIndex();
+        Random random = new Random(42);
+        while(indice.size() < NOMBRES){
+            StringBuilder nombre = new StringBuilder();
+            int largo = 4 + random.nextInt(8);
+            for(int i = 0; i < largo; i++){
+                nombre.append((char) ('a' + random.nextInt(26)));
+            }
+            nombre.setCharAt(0, Character.toUpperCase(nombre.charAt(0)));
+            indice.agregar(nombre.toString());
+        }
+        indice.agregar("María");
+        indice.agregar("Mariana");
+    }
+
+    @Benchmark
+    public List<String> buscar() {
+        return indice.buscar(prefijo, 10);
+    }
+}
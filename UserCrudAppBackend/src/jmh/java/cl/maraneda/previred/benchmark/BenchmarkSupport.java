@@ -0,0 +1,124 @@
+package cl.maraneda.previred.benchmark;
+
+import cl.maraneda.previred.Main;
+import cl.maraneda.previred.dto.UserSearchRow;
+import cl.maraneda.previred.model.Comuna;
+import cl.maraneda.previred.model.Region;
+import cl.maraneda.previred.model.User;
+import cl.maraneda.previred.util.RUT;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Datos sinteticos y arranque de la aplicacion para los benchmarks
+ */
+final class BenchmarkSupport {
+    static final String[] NOMBRES = {"Juan", "Maria", "Jose", "Ana", "Luis", "Carmen", "Pedro", "Rosa", "Diego", "Elena"};
+    static final String[] APELLIDOS = {"Gonzalez", "Munoz", "Rojas", "Diaz", "Perez", "Soto", "Contreras", "Silva", "Martinez", "Sepulveda"};
+    static final int COMUNAS = 346;
+    static final int PRIMER_RUT = 5_000_000;
+
+    private BenchmarkSupport(){
+    }
+
+    static String rut(int i){
+        int cuerpo = PRIMER_RUT + i;
+        return cuerpo + "-" + RUT.getDigito(cuerpo);
+    }
+
+    static LocalDate fechaNacimiento(int i){
+        return LocalDate.of(1950, 1, 1).plusDays(i % 20_000);
+    }
+
+    /**
+     * Usuarios en memoria con su comuna y region, como los entrega Hibernate
+     */
+    static List<User> usuarios(int cantidad){
+        Region region = Region.builder().id("RM").nombre("Region Metropolitana de Santiago").orden(7).build();
+        List<Comuna> comunas = IntStream.rangeClosed(1, COMUNAS)
+                                        .mapToObj(id -> Comuna.builder().id(id).nombre("Comuna " + id).region(region).build())
+                                        .toList();
+        List<User> usuarios = new ArrayList<>(cantidad);
+        for(int i = 0; i < cantidad; i++){
+            usuarios.add(User.builder()
+                             .rut(rut(i))
+                             .nombre(NOMBRES[i % NOMBRES.length])
+                             .apellido(APELLIDOS[(i / NOMBRES.length) % APELLIDOS.length])
+                             .fechaNacimiento(fechaNacimiento(i))
+                             .calle("Calle " + i)
+                             .comuna(comunas.get(i % COMUNAS))
+                             .build());
+        }
+        return usuarios;
+    }
+
+    /**
+     * Las mismas filas que entrega la consulta de busqueda para esos usuarios
+     */
+    static List<UserSearchRow> filas(int cantidad){
+        return usuarios(cantidad).stream()
+                                 .map(u -> new UserSearchRow(u.getRut(), u.getNombre(), u.getApellido(), u.getFechaNacimiento(),
+                                                             u.getCalle(), u.getComuna().getId(), u.getComuna().getNombre(),
+                                                             u.getComuna().getRegion().getId()))
+                                 .toList();
+    }
+
+    /**
+     * Levanta la aplicacion sin servidor web sobre una base H2 en memoria propia (con las migraciones de Flyway)
+     */
+    static ConfigurableApplicationContext arrancar(Map<String, Object> propiedades){
+        SpringApplication app = new SpringApplication(Main.class);
+        app.setWebApplicationType(WebApplicationType.NONE);
+        app.setDefaultProperties(propiedades);
+        return app.run();
+    }
+
+    /**
+     * Levanta la aplicacion completa, con Tomcat en un puerto libre (ver local.server.port)
+     */
+    static ConfigurableApplicationContext arrancarServidor(Map<String, Object> propiedades){
+        SpringApplication app = new SpringApplication(Main.class);
+        app.setWebApplicationType(WebApplicationType.SERVLET);
+        Map<String, Object> conPuerto = new HashMap<>(propiedades);
+        conPuerto.put("server.port", "0");
+        app.setDefaultProperties(conPuerto);
+        return app.run();
+    }
+
+    static ConfigurableApplicationContext arrancar(){
+        return arrancar(Map.of("spring.jpa.show-sql", "false", "logging.level.root", "WARN"));
+    }
+
+    /**
+     * Inserta usuarios sinteticos directamente por JDBC, en lotes
+     */
+    static void cargarUsuarios(ConfigurableApplicationContext ctx, int cantidad){
+        JdbcTemplate jdbc = ctx.getBean(JdbcTemplate.class);
+        int lote = 5_000;
+        for(int desde = 0; desde < cantidad; desde += lote){
+            List<Object[]> filas = new ArrayList<>(lote);
+            for(int i = desde; i < Math.min(cantidad, desde + lote); i++){
+                filas.add(new Object[]{
+                    rut(i),
+                    NOMBRES[i % NOMBRES.length],
+                    APELLIDOS[(i / NOMBRES.length) % APELLIDOS.length],
+                    fechaNacimiento(i),
+                    "Calle " + i,
+                    (i % COMUNAS) + 1
+                });
+            }
+            jdbc.batchUpdate(
+                "INSERT INTO usuario(rut, nombre, apellido, fecha_nacimiento, calle, comuna) VALUES (?, ?, ?, ?, ?, ?)",
+                filas);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package cl.maraneda.previred.benchmark;
+
+import cl.maraneda.previred.dto.ComunaDto;
+import cl.maraneda.previred.dto.RegionDto;
+import cl.maraneda.previred.mapper.ReferenceMapper;
+import cl.maraneda.previred.model.Comuna;
+import cl.maraneda.previred.model.Region;
+import cl.maraneda.previred.repository.ComunaRepository;
+import cl.maraneda.previred.service.ComunaService;
+import org.mapstruct.factory.Mappers;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Costo del mapeo en ComunaService.findByRegion, sin base de datos, y del mapeo generado por MapStruct
+ * comparado con el ModelMapper que se usaba antes, para las comunas de una region y para todas las regiones
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComunaServiceBenchmark {
+    private final ReferenceMapper referenceMapper = Mappers.getMapper(ReferenceMapper.class);
+    private final ModelMapper modelMapper = new ModelMapper();
+    private ComunaService comunaService;
+    private List<Comuna> comunas;
+    private List<Region> regiones;
+
+    @Setup
+    public void setup() {
+        // La region con mas comunas (RM) tiene 52
+        comunas = BenchmarkSupport.usuarios(52).stream().map(u -> u.getComuna()).toList();
+        regiones = IntStream.rangeClosed(1, 16)
+                            .mapToObj(i -> Region.builder().id("R" + i).nombre("Region " + i).orden(i).build())
+                            .toList();
+        ComunaRepository repositorio = (ComunaRepository) Proxy.newProxyInstance(
+            ComunaRepository.class.getClassLoader(),
+            new Class<?>[]{ComunaRepository.class},
+            (proxy, metodo, args) -> metodo.getName().equals("findByRegion") ? comunas : null);
+        comunaService = new ComunaService(repositorio, referenceMapper);
+    }
+
+    @Benchmark
+    public List<ComunaDto> findByRegion() {
+        return comunaService.findByRegion("RM");
+    }
+
+    @Benchmark
+    public List<ComunaDto> comunasMapStruct() {
+        return referenceMapper.toComunaDtos(comunas);
+    }
+
+    @Benchmark
+    public List<ComunaDto> comunasModelMapper() {
+        return comunas.stream().map(c -> modelMapper.map(c, ComunaDto.class)).toList();
+    }
+
+    @Benchmark
+    public List<RegionDto> regionesMapStruct() {
+        return referenceMapper.toRegionDtos(regiones);
+    }
+
+    @Benchmark
+    public List<RegionDto> regionesModelMapper() {
+        return regiones.stream().map(r -> modelMapper.map(r, RegionDto.class)).toList();
+    }
+}
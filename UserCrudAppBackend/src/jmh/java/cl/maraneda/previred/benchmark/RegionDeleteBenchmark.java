@@ -0,0 +1,129 @@
+package cl.maraneda.previred.benchmark;
+
+import cl.maraneda.previred.model.Comuna;
+import cl.maraneda.previred.model.Region;
+import cl.maraneda.previred.service.ReferenceDataService;
+import cl.maraneda.previred.service.RegionService;
+import jakarta.persistence.EntityGraph;
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Eliminacion de una region sintetica de 50 comunas con decenas de miles de usuarios contra un H2 embebido.
+ * Cada medicion vuelve a cargar la region. El modo anterior repite lo que hacia RegionService.deleteRegion
+ * antes de las sentencias por conjunto (cargar la region con sus comunas y borrarlas una por una), que ademas
+ * dejaba a los usuarios apuntando a comunas inexistentes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RegionDeleteBenchmark {
+    private static final String REGION = "BENCH";
+    private static final int PRIMERA_COMUNA = 5001;
+    private static final int COMUNAS = 50;
+    /*Arica, en otra region*/
+    private static final int COMUNA_DESTINO = 1;
+
+    @Param({"20000", "50000"})
+    private int usuarios;
+
+    @Param({"anterior", "eliminar", "reasignar"})
+    private String modo;
+
+    private ConfigurableApplicationContext ctx;
+    private RegionService service;
+    private ReferenceDataService referenceDataService;
+    private JdbcTemplate jdbc;
+    private TransactionTemplate transactionTemplate;
+    private EntityManager entityManager;
+
+    @Setup
+    public void setup() {
+        ctx = BenchmarkSupport.arrancar();
+        service = ctx.getBean(RegionService.class);
+        referenceDataService = ctx.getBean(ReferenceDataService.class);
+        jdbc = ctx.getBean(JdbcTemplate.class);
+        transactionTemplate = ctx.getBean(TransactionTemplate.class);
+        entityManager = ctx.getBean(EntityManager.class);
+    }
+
+    @Setup(Level.Iteration)
+    public void cargarRegion() {
+        jdbc.update("DELETE FROM usuario");
+        jdbc.update("DELETE FROM comuna WHERE region_id = ?", REGION);
+        jdbc.update("DELETE FROM region WHERE id = ?", REGION);
+        jdbc.update("INSERT INTO region(id, nombre, orden) VALUES (?, ?, ?)", REGION, "Region de prueba", 99);
+        List<Object[]> comunas = new ArrayList<>(COMUNAS);
+        for(int i = 0; i < COMUNAS; i++){
+            comunas.add(new Object[]{PRIMERA_COMUNA + i, "Comuna " + i, REGION});
+        }
+        jdbc.batchUpdate("INSERT INTO comuna(id, nombre, region_id) VALUES (?, ?, ?)", comunas);
+        int lote = 5_000;
+        for(int desde = 0; desde < usuarios; desde += lote){
+            List<Object[]> filas = new ArrayList<>(lote);
+            for(int i = desde; i < Math.min(usuarios, desde + lote); i++){
+                filas.add(new Object[]{
+                    BenchmarkSupport.rut(i),
+                    BenchmarkSupport.NOMBRES[i % BenchmarkSupport.NOMBRES.length],
+                    BenchmarkSupport.APELLIDOS[(i / BenchmarkSupport.NOMBRES.length) % BenchmarkSupport.APELLIDOS.length],
+                    BenchmarkSupport.fechaNacimiento(i),
+                    "Calle " + i,
+                    PRIMERA_COMUNA + i % COMUNAS
+                });
+            }
+            jdbc.batchUpdate(
+                "INSERT INTO usuario(rut, nombre, apellido, fecha_nacimiento, calle, comuna) VALUES (?, ?, ?, ?, ?, ?)",
+                filas);
+        }
+        referenceDataService.refresh();
+    }
+
+    @TearDown
+    public void tearDown() {
+        ctx.close();
+    }
+
+    @Benchmark
+    public Object eliminar() {
+        return switch(modo){
+            case "anterior" -> transactionTemplate.execute(status -> {
+                /*Las comunas ya no son EAGER: el grafo las trae en la misma consulta, como antes*/
+                EntityGraph<Region> conComunas = entityManager.createEntityGraph(Region.class);
+                conComunas.addSubgraph("comunas");
+                Region region = entityManager.find(Region.class, REGION, Map.of("jakarta.persistence.fetchgraph", conComunas));
+                for(Comuna comuna : region.getComunas()){
+                    comuna.setRegion(null);
+                }
+                region.getComunas().clear();
+                entityManager.flush();
+                entityManager.remove(region);
+                return region;
+            });
+            case "reasignar" -> service.deleteRegion(REGION, COMUNA_DESTINO);
+            default -> service.deleteRegion(REGION, null);
+        };
+    }
+}
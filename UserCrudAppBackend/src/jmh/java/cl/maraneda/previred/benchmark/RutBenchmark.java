@@ -0,0 +1,63 @@
+package cl.maraneda.previred.benchmark;
+
+import cl.maraneda.previred.exceptions.RUTException;
+import cl.maraneda.previred.util.RUT;
+import cl.maraneda.previred.util.RutCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RutBenchmark {
+    private String plano;
+    private String conPuntos;
+    private int cuerpo;
+    private RUT rut;
+
+    @Setup
+    public void setup() throws RUTException {
+        plano = "12345678-5";
+        conPuntos = "12.345.678-5";
+        cuerpo = 12345678;
+        rut = new RUT(plano);
+    }
+
+    @Benchmark
+    public RUT parsePlano() throws RUTException {
+        return new RUT(plano);
+    }
+
+    @Benchmark
+    public RUT parseConPuntos() throws RUTException {
+        return new RUT(conPuntos);
+    }
+
+    @Benchmark
+    public long parseCodec() {
+        return RutCodec.parse(conPuntos);
+    }
+
+    @Benchmark
+    public char digitoVerificador() {
+        return RUT.getDigito(cuerpo);
+    }
+
+    @Benchmark
+    public String getFormated() {
+        return rut.getFormated();
+    }
+}
@@ -0,0 +1,79 @@
+package cl.maraneda.previred.benchmark;
+
+import cl.maraneda.previred.dto.UserSearchRow;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serializacion de 10.000 resultados de busqueda en JSON, CBOR y Smile, con y sin gzip. Los bytes de cada
+ * combinacion quedan como el contador secundario "bytes" en los resultados, para comparar lo que viaja por la red.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchEncodingBenchmark {
+    private static final int FILAS = 10_000;
+
+    @Param({"json", "cbor", "smile"})
+    private String formato;
+
+    @Param({"false", "true"})
+    private boolean gzip;
+
+    private ObjectMapper mapper;
+    private List<UserSearchRow> resultados;
+
+    /*Se asigna (no se suma) en cada invocacion: el valor reportado es el tamano de una respuesta*/
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Tamano {
+        public long bytes;
+    }
+
+    @Setup
+    public void setup() {
+        mapper = switch(formato){
+            case "cbor" -> new CBORMapper();
+            case "smile" -> new SmileMapper();
+            default -> new ObjectMapper();
+        };
+        resultados = BenchmarkSupport.filas(FILAS);
+    }
+
+    @Benchmark
+    public byte[] serializar(Tamano tamano) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 20);
+        if(gzip){
+            try(GZIPOutputStream comprimido = new GZIPOutputStream(bytes, 64 * 1024)){
+                mapper.writeValue(comprimido, resultados);
+            }
+        }else{
+            mapper.writeValue(bytes, resultados);
+        }
+        byte[] cuerpo = bytes.toByteArray();
+        tamano.bytes = cuerpo.length;
+        return cuerpo;
+    }
+}
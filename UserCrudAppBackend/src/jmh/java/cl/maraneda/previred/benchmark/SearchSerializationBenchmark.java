@@ -0,0 +1,72 @@
+package cl.maraneda.previred.benchmark;
+
+import cl.maraneda.previred.dto.SearchResultDto;
+import cl.maraneda.previred.dto.UserSearchRow;
+import cl.maraneda.previred.util.Util;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filas de busqueda a JSON: como antes (SearchResultDto con String.format y Period por fila) o escritas
+ * directo con UserSearchRowSerializer
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchSerializationBenchmark {
+    @Param({"10000"})
+    private int filas;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private List<UserSearchRow> resultados;
+
+    @Setup
+    public void setup() {
+        resultados = BenchmarkSupport.filas(filas);
+    }
+
+    private static SearchResultDto anterior(UserSearchRow fila){
+        LocalDate fecha = fila.fechaNacimiento();
+        return SearchResultDto.builder()
+                              .nombre(fila.nombre())
+                              .apellido(fila.apellido())
+                              .rut(fila.rut())
+                              .fechaNacimiento(String.format("%s (%d años)", Util.OUTPUT_DATE_FORMAT.format(fecha),
+                                  Period.between(fecha, LocalDate.now(ZoneId.systemDefault()).plusDays(1L)).getYears()))
+                              .calle(fila.calle())
+                              .nombreComuna(fila.nombreComuna())
+                              .comuna(fila.comuna())
+                              .region(fila.region())
+                              .build();
+    }
+
+    @Benchmark
+    public byte[] conDto() throws IOException {
+        return mapper.writeValueAsBytes(resultados.stream().map(SearchSerializationBenchmark::anterior).toList());
+    }
+
+    @Benchmark
+    public byte[] directo() throws IOException {
+        return mapper.writeValueAsBytes(resultados);
+    }
+}
@@ -0,0 +1,111 @@
+package cl.maraneda.previred.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tiempo desde que se lanza la JVM hasta la primera busqueda respondida (POST /previred/user/search con
+ * criterio TODOS; sin usuarios es un 404, pero la consulta ya paso por el controlador y la base de datos).
+ * Cada medicion levanta un proceso nuevo con el jar de build/libs o, en modo faststart-cds, con el jar
+ * extraido de build/cds. Antes de ejecutarlo: gradlew cdsArchive -Pfaststart
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StartupBenchmark {
+    private static final String JAR = "UserCrudAppBackend-1.0-SNAPSHOT.jar";
+    private static final String BUSQUEDA = "{\"criteria\":\"TODOS\"}";
+
+    @Param({"normal", "faststart", "faststart-cds"})
+    private String modo;
+
+    private Process proceso;
+
+    private List<String> comando(int puerto){
+        String java = ProcessHandle.current().info().command().orElse("java");
+        List<String> comando = new ArrayList<>(List.of(java));
+        if(!modo.equals("normal")){
+            comando.add("-Dspring.aot.enabled=true");
+            comando.add("-Dspring.profiles.active=faststart");
+        }
+        if(modo.equals("faststart-cds")){
+            comando.add("-XX:SharedArchiveFile=" + new File("build/cds/application.jsa").getAbsolutePath());
+            comando.add("-jar");
+            comando.add(new File("build/cds/application/" + JAR).getAbsolutePath());
+        }else{
+            comando.add("-jar");
+            comando.add(new File("build/libs/" + JAR).getAbsolutePath());
+        }
+        comando.add("--server.port=" + puerto);
+        comando.add("--logging.level.root=WARN");
+        return comando;
+    }
+
+    private static int puertoLibre() throws IOException {
+        try(ServerSocket socket = new ServerSocket(0)){
+            return socket.getLocalPort();
+        }
+    }
+
+    @Benchmark
+    public int primeraBusqueda() throws IOException, InterruptedException {
+        int puerto = puertoLibre();
+        proceso = new ProcessBuilder(comando(puerto)).redirectErrorStream(true)
+                                                       .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                                                       .start();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + puerto + "/previred/user/search"))
+                                         .header("Content-Type", "application/json")
+                                         .timeout(Duration.ofSeconds(10))
+                                         .POST(HttpRequest.BodyPublishers.ofString(BUSQUEDA))
+                                         .build();
+        try(HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(200)).build()){
+            while(proceso.isAlive()){
+                try{
+                    int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                    if(status == 200 || status == 404){
+                        return status;
+                    }
+                }catch(IOException e){
+                    /*Tomcat todavia no escucha*/
+                }
+                Thread.sleep(5);
+            }
+        }
+        throw new IllegalStateException("La aplicacion termino sin responder (codigo " + proceso.exitValue() + ")");
+    }
+
+    @TearDown(Level.Iteration)
+    public void detener() throws InterruptedException {
+        if(proceso != null){
+            proceso.destroy();
+            if(!proceso.waitFor(30, TimeUnit.SECONDS)){
+                proceso.destroyForcibly().waitFor();
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package cl.maraneda.previred.benchmark;
+
+import cl.maraneda.previred.dto.ImportResultDto;
+import cl.maraneda.previred.dto.UserDto;
+import cl.maraneda.previred.service.UserImportService;
+import cl.maraneda.previred.util.Util;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Carga masiva de usuarios contra un H2 embebido vacio. Dividiendo usuarios por el tiempo
+ * de cada operacion se obtienen las inserciones por segundo.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class UserImportBenchmark {
+    @Param({"10000"})
+    private int usuarios;
+
+    @Param({"100", "500", "2000"})
+    private int lote;
+
+    private ConfigurableApplicationContext ctx;
+    private UserImportService service;
+    private JdbcTemplate jdbc;
+    private byte[] json;
+
+    @Setup
+    public void setup() throws IOException {
+        ctx = BenchmarkSupport.arrancar(Map.of(
+            "spring.jpa.show-sql", "false",
+            "logging.level.root", "WARN",
+            "previred.import.batch-size", String.valueOf(lote)));
+        service = ctx.getBean(UserImportService.class);
+        jdbc = ctx.getBean(JdbcTemplate.class);
+        ObjectMapper mapper = ctx.getBean(ObjectMapper.class);
+        List<UserDto> dtos = BenchmarkSupport.usuarios(usuarios)
+                                             .stream()
+                                             .<UserDto>map(u -> UserDto.builder()
+                                                              .rut(u.getRut())
+                                                              .nombre(u.getNombre())
+                                                              .apellido(u.getApellido())
+                                                              .fechaNacimiento(Util.INPUT_DATE_FORMAT.format(u.getFechaNacimiento()))
+                                                              .calle(u.getCalle())
+                                                              .comuna(u.getComuna().getId())
+                                                              .build())
+                                             .toList();
+        json = mapper.writeValueAsBytes(dtos);
+    }
+
+    @Setup(Level.Invocation)
+    public void vaciar() {
+        jdbc.update("DELETE FROM usuario");
+    }
+
+    @TearDown
+    public void tearDown() {
+        ctx.close();
+    }
+
+    @Benchmark
+    public ImportResultDto importar() throws IOException {
+        return service.importUsers(new ByteArrayInputStream(json));
+    }
+}
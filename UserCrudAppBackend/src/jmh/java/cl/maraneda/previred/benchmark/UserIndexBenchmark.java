@@ -0,0 +1,89 @@
+package cl.maraneda.previred.benchmark;
+
+import cl.maraneda.previred.dto.UserSearchRow;
+import cl.maraneda.previred.repository.UserRepository;
+import cl.maraneda.previred.util.FiltroBusqueda;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Primera pagina de una busqueda sobre 1M de usuarios, con y sin los indices de V006.
+ * Se buscan valores poco frecuentes (50 usuarios "Aguja" repartidos en la tabla, una comuna, una region),
+ * que es donde un recorrido completo de la tabla no puede terminar antes de tiempo.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class UserIndexBenchmark {
+    private static final String AGUJA = "Aguja";
+    private static final int AGUJAS = 50;
+
+    @Param({"1000000"})
+    private int usuarios;
+
+    @Param({"true", "false"})
+    private boolean indices;
+
+    @Param({"POR_APELLIDO", "POR_NOMBRE_COMPLETO", "POR_COMUNA", "POR_REGION"})
+    private String criterio;
+
+    private ConfigurableApplicationContext ctx;
+    private UserRepository repository;
+    private TransactionTemplate transaccion;
+    private FiltroBusqueda filtro;
+
+    @Setup
+    public void setup() {
+        ctx = BenchmarkSupport.arrancar();
+        BenchmarkSupport.cargarUsuarios(ctx, usuarios);
+        JdbcTemplate jdbc = ctx.getBean(JdbcTemplate.class);
+        for(int i = 0; i < AGUJAS; i++){
+            jdbc.update("UPDATE usuario SET nombre = ?, apellido = ? WHERE rut = ?",
+                        AGUJA, AGUJA, BenchmarkSupport.rut(i * (usuarios / AGUJAS)));
+        }
+        if(!indices){
+            List.of("idx_usuario_apellido_nombre", "idx_usuario_nombre", "idx_usuario_comuna", "idx_comuna_region")
+                .forEach(idx -> jdbc.execute("DROP INDEX " + idx));
+        }
+        jdbc.execute("ANALYZE");
+        repository = ctx.getBean(UserRepository.class);
+        transaccion = new TransactionTemplate(ctx.getBean(PlatformTransactionManager.class));
+        transaccion.setReadOnly(true);
+        filtro = switch(criterio){
+            case "POR_APELLIDO" -> FiltroBusqueda.builder().apellido(AGUJA).build();
+            case "POR_NOMBRE_COMPLETO" -> FiltroBusqueda.builder().nombre(AGUJA).apellido(AGUJA).build();
+            case "POR_COMUNA" -> FiltroBusqueda.builder().comuna(BenchmarkSupport.COMUNAS).build();
+            default -> FiltroBusqueda.builder().region("XI").build();
+        };
+    }
+
+    @TearDown
+    public void tearDown() {
+        ctx.close();
+    }
+
+    @Benchmark
+    public List<UserSearchRow> buscar() {
+        return transaccion.execute(status -> repository.search(filtro, "", 101));
+    }
+}
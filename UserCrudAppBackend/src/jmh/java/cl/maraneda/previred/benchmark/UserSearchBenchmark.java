@@ -0,0 +1,70 @@
+package cl.maraneda.previred.benchmark;
+
+import cl.maraneda.previred.controller.UserController;
+import cl.maraneda.previred.dto.SearchDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ida y vuelta de UserController.buscar contra un H2 embebido con usuarios sinteticos.
+ * La transaccion de solo lectura hace el papel del open-in-view de una peticion HTTP real.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserSearchBenchmark {
+    @Param({"10000"})
+    private int usuarios;
+
+    @Param({"TODOS", "POR_NOMBRE", "POR_COMUNA"})
+    private String criterio;
+
+    private ConfigurableApplicationContext ctx;
+    private UserController controller;
+    private TransactionTemplate transaccion;
+    private SearchDto filtro;
+
+    @Setup
+    public void setup() {
+        ctx = BenchmarkSupport.arrancar();
+        BenchmarkSupport.cargarUsuarios(ctx, usuarios);
+        controller = ctx.getBean(UserController.class);
+        transaccion = new TransactionTemplate(ctx.getBean(PlatformTransactionManager.class));
+        transaccion.setReadOnly(true);
+        filtro = SearchDto.builder()
+                          .criteria(criterio)
+                          .nombre(BenchmarkSupport.NOMBRES[0])
+                          .comuna(1)
+                          .pageSize(100)
+                          .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        ctx.close();
+    }
+
+    @Benchmark
+    public ResponseEntity<Object> buscar() {
+        return transaccion.execute(status -> controller.buscar(filtro));
+    }
+}
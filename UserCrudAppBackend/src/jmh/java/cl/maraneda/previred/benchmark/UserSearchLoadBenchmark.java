@@ -0,0 +1,86 @@
+package cl.maraneda.previred.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prueba de carga de POST /previred/user/search sobre Tomcat real, con 1000 clientes concurrentes,
+ * comparando el pool de hilos de plataforma con el perfil "virtual".
+ * SampleTime entrega los percentiles (p99 incluido) ademas del promedio; el throughput
+ * es clientes / tiempo promedio.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 20)
+@Threads(1000)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-Djdk.httpclient.connectionPoolSize=1000"})
+public class UserSearchLoadBenchmark {
+    private static final String BUSQUEDA =
+        "{\"criteria\":\"POR_NOMBRE\",\"nombre\":\"" + BenchmarkSupport.NOMBRES[0] + "\",\"pageSize\":50}";
+
+    @Param({"platform", "virtual"})
+    private String modo;
+
+    @Param({"10000"})
+    private int usuarios;
+
+    private ConfigurableApplicationContext ctx;
+    private HttpClient client;
+    private HttpRequest request;
+
+    @Setup
+    public void setup() {
+        Map<String, Object> propiedades = new HashMap<>();
+        propiedades.put("spring.jpa.show-sql", "false");
+        propiedades.put("logging.level.root", "WARN");
+        if(modo.equals("virtual")){
+            propiedades.put("spring.profiles.active", "virtual");
+        }
+        ctx = BenchmarkSupport.arrancarServidor(propiedades);
+        BenchmarkSupport.cargarUsuarios(ctx, usuarios);
+        int puerto = ctx.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        request = HttpRequest.newBuilder(URI.create("http://localhost:" + puerto + "/previred/user/search"))
+                             .header("Content-Type", "application/json")
+                             .POST(HttpRequest.BodyPublishers.ofString(BUSQUEDA))
+                             .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.close();
+        ctx.close();
+    }
+
+    @Benchmark
+    public int buscar() throws IOException, InterruptedException {
+        HttpResponse<byte[]> resp = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if(resp.statusCode() != 200){
+            throw new IllegalStateException("Respuesta inesperada: " + resp.statusCode());
+        }
+        return resp.body().length;
+    }
+}
@@ -0,0 +1,59 @@
+package cl.maraneda.previred.benchmark;
+
+import cl.maraneda.previred.dto.SearchResultDto;
+import cl.maraneda.previred.dto.UserDto;
+import cl.maraneda.previred.model.User;
+import cl.maraneda.previred.util.Util;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UtilBenchmark {
+    @Param({"1", "100", "10000"})
+    private int filas;
+
+    private List<User> usuarios;
+
+    @Setup
+    public void setup() {
+        usuarios = BenchmarkSupport.usuarios(filas);
+    }
+
+    @Benchmark
+    public List<SearchResultDto> mapToSearchDto() {
+        return Util.mapToSearchDto(usuarios);
+    }
+
+    @Benchmark
+    public void mapToUserDto(Blackhole bh) {
+        for(User u : usuarios){
+            UserDto dto = Util.mapToUserDto(u);
+            bh.consume(dto);
+        }
+    }
+
+    @Benchmark
+    public void getYears(Blackhole bh) {
+        for(User u : usuarios){
+            bh.consume(Util.getYears(u.getFechaNacimiento()));
+        }
+    }
+}
@@ -1,13 +1,45 @@
 package cl.maraneda.previred;
 
-import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.server.Compression;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.boot.web.servlet.server.ConfigurableServletWebServerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 @Configuration
 public class ApplicationConfig {
+    /*Las exportaciones (StreamingResponseBody) corren como peticiones asincronas: sin esto se cortan a los 30 segundos*/
     @Bean
-    public ModelMapper modelMapper() {
-        return new ModelMapper();
+    public WebMvcConfigurer asyncConfigurer(@Value("${previred.export.timeout-ms:600000}") long timeout) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+                configurer.setDefaultTimeout(timeout);
+            }
+        };
+    }
+
+    /*
+     * Comprime con gzip las respuestas de busqueda, autocompletado y conteo (JSON, CBOR, Smile o texto) desde
+     * el tamano indicado. La exportacion con gzip=true ya viene comprimida y Tomcat no la vuelve a comprimir.
+     */
+    @Bean
+    @ConditionalOnProperty(name="previred.compression.enabled", havingValue="true", matchIfMissing=true)
+    public WebServerFactoryCustomizer<ConfigurableServletWebServerFactory> compressionCustomizer(
+            @Value("${previred.compression.min-response-bytes:2048}") long minimo) {
+        return factory -> {
+            Compression compression = new Compression();
+            compression.setEnabled(true);
+            compression.setMimeTypes(new String[]{MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE,
+                                                  "application/x-jackson-smile", MediaType.TEXT_PLAIN_VALUE});
+            compression.setMinResponseSize(DataSize.ofBytes(minimo));
+            factory.setCompression(compression);
+        };
     }
 }
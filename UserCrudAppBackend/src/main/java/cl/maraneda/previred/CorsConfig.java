@@ -1,5 +1,6 @@
 package cl.maraneda.previred;
 
+import cl.maraneda.previred.controller.UserController;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
@@ -17,6 +18,7 @@ public class CorsConfig {
                         .allowedOrigins("http://localhost:5173")
                         .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
                         .allowedHeaders("*")
+                        .exposedHeaders(UserController.NEXT_CURSOR_HEADER)
                         .allowCredentials(true);
             }
         };
@@ -3,11 +3,16 @@ package cl.maraneda.previred;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
+import java.util.Map;
+
 //TIP To <b>Run</b> code, press <shortcut actionId="Run"/> or
 // click the <icon src="AllIcons.Actions.Execute"/> icon in the gutter.
 @SpringBootApplication
 public class Main {
     public static void main(String[] args) {
-        SpringApplication.run(Main.class);
+        SpringApplication app = new SpringApplication(Main.class);
+        // application.yml no se empaqueta, asi que los endpoints de actuator se exponen aqui (se pueden sobreescribir)
+        app.setDefaultProperties(Map.of("management.endpoints.web.exposure.include", "health,prometheus"));
+        app.run(args);
     }
-}
\ No newline at end of file
+}
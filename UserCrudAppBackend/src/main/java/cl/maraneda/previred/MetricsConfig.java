@@ -0,0 +1,15 @@
+package cl.maraneda.previred;
+
+import cl.maraneda.previred.metrics.JdbcStatementCounter;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfig {
+    @Bean
+    public HibernatePropertiesCustomizer statementCounter() {
+        return props -> props.put(AvailableSettings.STATEMENT_INSPECTOR, new JdbcStatementCounter());
+    }
+}
@@ -1,13 +1,16 @@
 package cl.maraneda.previred;
 
 import jakarta.annotation.PostConstruct;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 import java.net.URL;
 import java.util.Enumeration;
 
+/*Diagnostico de las migraciones en el classpath. El perfil faststart lo desactiva*/
 @Component
+@ConditionalOnProperty(name="previred.startup.verify-migrations", havingValue="true", matchIfMissing=true)
 public class PathVerifier {
     @PostConstruct
     public void verify() {
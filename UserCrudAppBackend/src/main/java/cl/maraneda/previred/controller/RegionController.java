@@ -1,28 +1,57 @@
 package cl.maraneda.previred.controller;
 
-import cl.maraneda.previred.dto.RegionDto;
+import cl.maraneda.previred.service.ReferenceDataService;
 import cl.maraneda.previred.service.RegionService;
+import cl.maraneda.previred.util.ReferenceSnapshot;
+import jakarta.persistence.EntityNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.ArrayList;
-import java.util.List;
-
 @RestController
 @RequestMapping("/previred/region")
 public class RegionController {
+    @Autowired
+    private transient ReferenceDataService referenceDataService;
+
     @Autowired
     private transient RegionService regionService;
 
+    /*Con ETag en la respuesta, Spring responde 304 por si solo si el If-None-Match del cliente coincide*/
+    static ResponseEntity<byte[]> responderJson(ReferenceSnapshot.JsonBody body){
+        return ResponseEntity.ok()
+                             .eTag(body.etag())
+                             .contentType(MediaType.APPLICATION_JSON)
+                             .body(body.json());
+    }
+
     @GetMapping(value="/", produces= MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<List<RegionDto>> obtieneRegiones(){
-        List<RegionDto> regiones =
-            new ArrayList<>(List.of(RegionDto.builder().id("0").nombre("Seleccione una region").build()));
-        regiones.addAll(regionService.findAllOrdered());
-        return ResponseEntity.ok(regiones);
+    public ResponseEntity<byte[]> obtieneRegiones(){
+        return responderJson(referenceDataService.snapshot().regionesJson());
+    }
+
+    @GetMapping(value="/bundle", produces= MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> obtieneRegionesYComunas(){
+        return responderJson(referenceDataService.snapshot().bundleJson());
+    }
+
+    @DeleteMapping(value="/{regionId}",
+                   produces={MediaType.APPLICATION_JSON_VALUE, MediaType.TEXT_PLAIN_VALUE})
+    public ResponseEntity<Object> eliminar(@PathVariable("regionId") String regionId,
+                                           @RequestParam(name="comunaDestino", required=false) Integer comunaDestino){
+        try{
+            return ResponseEntity.ok(regionService.deleteRegion(regionId, comunaDestino));
+        }catch(EntityNotFoundException e){
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        }catch(IllegalArgumentException e){
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 }
@@ -1,67 +1,129 @@
 package cl.maraneda.previred.controller;
 
+import cl.maraneda.previred.dto.ImportResultDto;
 import cl.maraneda.previred.dto.SearchDto;
-import cl.maraneda.previred.dto.SearchResultDto;
+import cl.maraneda.previred.dto.SearchPageDto;
+import cl.maraneda.previred.dto.SyncActionDto;
 import cl.maraneda.previred.dto.UpdateInputDto;
 import cl.maraneda.previred.dto.UserDto;
-import cl.maraneda.previred.exceptions.RUTException;
-import cl.maraneda.previred.exceptions.RutRuntimeException;
+import cl.maraneda.previred.metrics.SearchMetrics;
 import cl.maraneda.previred.service.ComunaService;
+import cl.maraneda.previred.service.UserBatchService;
+import cl.maraneda.previred.service.UserCountService;
+import cl.maraneda.previred.service.UserImportService;
+import cl.maraneda.previred.service.UserNameIndexService;
 import cl.maraneda.previred.service.UserService;
 import cl.maraneda.previred.util.CriterioBusquedaUsuario;
-import cl.maraneda.previred.util.RUT;
+import cl.maraneda.previred.util.FiltroBusqueda;
+import cl.maraneda.previred.util.FormatoExportacion;
+import cl.maraneda.previred.util.RutCodec;
+import cl.maraneda.previred.util.Util;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.lang.reflect.InvocationTargetException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/previred/user")
 public class UserController {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+    private static final int MAX_SUGERENCIAS = 50;
+
     @Autowired
     private transient UserService userService;
 
     @Autowired
     private transient ComunaService comunaService;
 
+    @Autowired
+    private transient UserImportService userImportService;
+
+    @Autowired
+    private transient SearchMetrics searchMetrics;
+
+    @Autowired
+    private transient UserBatchService userBatchService;
+
+    @Autowired
+    private transient UserNameIndexService userNameIndexService;
+
+    @Autowired
+    private transient UserCountService userCountService;
+
     private static final ResponseEntity<String> RESPUESTA_RUT_INVALIDO =
         ResponseEntity.badRequest().body("Formato de rut invalido o Rut no concuerda con digito verificador");
 
+    /*En modo write-behind la escritura quedo en el diario y se aplicara en segundo plano*/
+    private ResponseEntity<String> exito(HttpStatus status, String mensaje){
+        return ResponseEntity.status(userService.isWriteBehind() ? HttpStatus.ACCEPTED : status).body(mensaje);
+    }
+
     private ResponseEntity<Object> buscarPorRut(String rut){
         if(rut==null || rut.isBlank()){
             return ResponseEntity.badRequest()
                     .body("El RUT es obligatorio para buscar usuarios por ese criterio");
         }
-        try{
-            return ResponseEntity.ok(List.of(userService.findById(new RUT(rut.trim()).toString())));
-        }catch(RUTException | RutRuntimeException e){
+        long valor = RutCodec.parse(rut.trim());
+        if(!RutCodec.isValid(valor)){
             return ResponseEntity.badRequest()
                     .body("El valor ingresado no es un RUT valido: " + rut);
+        }
+        try{
+            return ResponseEntity.ok(List.of(userService.findById(RutCodec.toString(valor))));
         }catch(IllegalArgumentException e){
             return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
         }
     }
 
-    private ResponseEntity<Object> buscarPorNombreYApellido(String nombre, String apellido){
+    private static ResponseEntity<Object> responderPagina(SearchPageDto pagina, String mensajeNoEncontrado){
+        if(pagina.getUsers().isEmpty()){
+            return new ResponseEntity<>(mensajeNoEncontrado, HttpStatus.NOT_FOUND);
+        }
+        ResponseEntity.BodyBuilder resp = ResponseEntity.ok();
+        if(pagina.getNextCursor() != null){
+            resp.header(NEXT_CURSOR_HEADER, pagina.getNextCursor());
+        }
+        return resp.body(pagina.getUsers());
+    }
+
+    private ResponseEntity<Object> buscarPorFiltro(SearchDto input, FiltroBusqueda filtro, String mensajeNoEncontrado){
+        return responderPagina(
+            userService.search(filtro, input.getCursor(), input.getPageSize()),
+            mensajeNoEncontrado);
+    }
+
+    private ResponseEntity<Object> buscarPorNombreYApellido(SearchDto input){
+        String nombre = input.getNombre();
+        String apellido = input.getApellido();
         if(nombre==null || nombre.isBlank() || apellido==null || apellido.isBlank()){
             return ResponseEntity.badRequest()
                     .body("El nombre y el apellido son obligatorios para buscar usuarios por ese criterio");
         }
-        List<SearchResultDto> users = userService.findByNombreAndApellido(nombre, apellido);
-        return users.isEmpty() ?
-            new ResponseEntity<>("No se encontraron usuarios por nombre y apellido", HttpStatus.NOT_FOUND) :
-            ResponseEntity.ok(users);
+        return buscarPorFiltro(
+            input,
+            FiltroBusqueda.builder().nombre(nombre).apellido(apellido).build(),
+            "No se encontraron usuarios por nombre y apellido");
     }
 
     private ResponseEntity<Object> buscarPorOtrosCriterios(SearchDto input, CriterioBusquedaUsuario crit){
@@ -79,41 +141,90 @@ public class UserController {
            valor.equals("0")){
             return ResponseEntity.badRequest().body("El valor es obligatorio para el criterio de busqueda especificado");
         }
-        try {
-            List<SearchResultDto> users = userService.findByCriterio(valor, crit);
-            if(users.isEmpty()){
-                return new ResponseEntity<>("No se encontraron usuarios por el criterio especificado", HttpStatus.NOT_FOUND);
-            }
-            return ResponseEntity.ok(users);
-        }catch(NoSuchMethodException e){
+        FiltroBusqueda filtro = switch(crit){
+            case POR_NOMBRE -> FiltroBusqueda.builder().nombre(valor).build();
+            case POR_APELLIDO -> FiltroBusqueda.builder().apellido(valor).build();
+            case POR_REGION -> FiltroBusqueda.builder().region(valor).build();
+            case POR_COMUNA -> FiltroBusqueda.builder().comuna(input.getComuna()).build();
+            default -> null;
+        };
+        if(filtro == null){
             return ResponseEntity.badRequest().body("Criterio de busqueda no reconocido");
-        }catch(InvocationTargetException e){
-            return ResponseEntity.internalServerError()
-                .body("Error interno al buscar por el criterio " + crit.toString().replace("_", "") + ": " + e.getCause());
-        }catch(IllegalAccessException e){
-            return ResponseEntity.internalServerError()
-                    .body("Acceso ilegal al buscar por el criterio especificado " + crit.toString().replace("_", "") + ": " + e);
         }
+        return buscarPorFiltro(input, filtro, "No se encontraron usuarios por el criterio especificado");
+    }
+
+    private static String valorFiltro(String valor){
+        return valor == null || valor.isBlank() ? null : valor.trim();
     }
 
-    private ResponseEntity<Object> buscarTodos(){
-        List<SearchResultDto> users = userService.findAll();
-        if(users.isEmpty()){
-            return new ResponseEntity<>("No se encontraron usuarios", HttpStatus.NOT_FOUND);
+    private ResponseEntity<Object> buscarPorFiltros(SearchDto input){
+        String operador = Optional.ofNullable(input.getOperator()).orElse("AND").trim().toUpperCase();
+        if(!operador.equals("AND") && !operador.equals("OR")){
+            return ResponseEntity.badRequest().body("Operador no reconocido: " + input.getOperator());
+        }
+        String rut = valorFiltro(input.getRut());
+        if(rut != null){
+            long valor = RutCodec.parse(rut);
+            if(!RutCodec.isValid(valor)){
+                return ResponseEntity.badRequest()
+                        .body("El valor ingresado no es un RUT valido: " + input.getRut());
+            }
+            rut = RutCodec.toString(valor);
+        }
+        FiltroBusqueda filtro = FiltroBusqueda.builder()
+                                              .nombre(valorFiltro(input.getNombre()))
+                                              .apellido(valorFiltro(input.getApellido()))
+                                              .region(Optional.ofNullable(valorFiltro(input.getRegion())).filter(r -> !r.equals("0")).orElse(null))
+                                              .comuna(Optional.ofNullable(input.getComuna()).filter(c -> c != 0).orElse(null))
+                                              .rut(rut)
+                                              .disyuncion(operador.equals("OR"))
+                                              .build();
+        if(filtro.isEmpty()){
+            return ResponseEntity.badRequest().body("Debe ingresar al menos un filtro para buscar usuarios por ese criterio");
         }
-        return ResponseEntity.ok(users);
+        return buscarPorFiltro(input, filtro, "No se encontraron usuarios por los filtros especificados");
     }
 
+    /*CBOR y Smile son el mismo JSON en binario, para los consumidores que piden paginas grandes*/
     @PostMapping(value="/search",
                  consumes=MediaType.APPLICATION_JSON_VALUE,
-                 produces={MediaType.APPLICATION_JSON_VALUE, MediaType.TEXT_PLAIN_VALUE})
+                 produces={MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE,
+                           MediaType.TEXT_PLAIN_VALUE})
     public ResponseEntity<Object> buscar(@RequestBody SearchDto filter){
+        return mensajeComoTexto(
+            searchMetrics.buscar(etiquetaCriterio(filter.getCriteria()), () -> this.buscarSegunCriterio(filter)));
+    }
+
+    /*Los mensajes de error van como texto aunque el cliente pida CBOR o Smile, que los codificarian como un string binario*/
+    private static ResponseEntity<Object> mensajeComoTexto(ResponseEntity<Object> resp){
+        if(!(resp.getBody() instanceof String mensaje)){
+            return resp;
+        }
+        return ResponseEntity.status(resp.getStatusCode())
+                             .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                             .body(mensaje);
+    }
+
+    private static String etiquetaCriterio(String criteria){
+        try{
+            return CriterioBusquedaUsuario.valueOf(criteria).name();
+        }catch(IllegalArgumentException | NullPointerException e){
+            return "DESCONOCIDO";
+        }
+    }
+
+    private ResponseEntity<Object> buscarSegunCriterio(SearchDto filter){
+        if(!Util.isValidCursor(filter.getCursor())){
+            return ResponseEntity.badRequest().body("Cursor de paginacion invalido");
+        }
         try {
             CriterioBusquedaUsuario crit = CriterioBusquedaUsuario.valueOf(filter.getCriteria());
             return switch(crit){
-                case TODOS -> this.buscarTodos();
+                case TODOS -> this.buscarPorFiltro(filter, FiltroBusqueda.TODOS, "No se encontraron usuarios");
                 case POR_RUT -> this.buscarPorRut(filter.getRut());
-                case POR_NOMBRE_COMPLETO -> this.buscarPorNombreYApellido(filter.getNombre(), filter.getApellido());
+                case POR_NOMBRE_COMPLETO -> this.buscarPorNombreYApellido(filter);
+                case POR_FILTROS -> this.buscarPorFiltros(filter);
                 default -> this.buscarPorOtrosCriterios(filter, crit);
             };
         }catch(IllegalArgumentException e){
@@ -122,6 +233,51 @@ public class UserController {
         }
     }
 
+    /**
+     * Se responde desde el indice en memoria, sin ir a la base de datos
+     *
+     * @param campo nombre o apellido
+     * @param prefijo El inicio del nombre o apellido, sin importar tildes ni mayusculas
+     * @param limite Cantidad maxima de sugerencias (entre 1 y MAX_SUGERENCIAS)
+     * @return Los nombres o apellidos que empiezan con el prefijo, primero los que tienen mas usuarios y, entre los
+     *         que tienen los mismos, en orden alfabetico
+     */
+    @GetMapping(value="/autocomplete",
+                produces={MediaType.APPLICATION_JSON_VALUE, MediaType.TEXT_PLAIN_VALUE})
+    public ResponseEntity<Object> autocompletar(
+            @RequestParam(value="campo") String campo,
+            @RequestParam(value="prefijo", defaultValue="") String prefijo,
+            @RequestParam(value="limite", defaultValue="10") int limite){
+        int cantidad = Math.clamp(limite, 1, MAX_SUGERENCIAS);
+        return switch(campo.trim().toLowerCase(Locale.ROOT)){
+            case "nombre" -> ResponseEntity.ok(userNameIndexService.nombres(prefijo, cantidad));
+            case "apellido" -> ResponseEntity.ok(userNameIndexService.apellidos(prefijo, cantidad));
+            default -> ResponseEntity.badRequest().body("Campo de autocompletado no reconocido: " + campo);
+        };
+    }
+
+    /*Se responde desde los contadores en memoria, sin ir a la base de datos*/
+    @GetMapping(value="/conteo/porRegion",
+                produces={MediaType.APPLICATION_JSON_VALUE, MediaType.TEXT_PLAIN_VALUE})
+    public ResponseEntity<Object> contarPorRegion(@RequestParam(value="tramos", required=false) String tramos){
+        try{
+            return ResponseEntity.ok(userCountService.porRegion(UserCountService.parseTramos(tramos)));
+        }catch(IllegalArgumentException e){
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @GetMapping(value="/conteo/porComuna",
+                produces={MediaType.APPLICATION_JSON_VALUE, MediaType.TEXT_PLAIN_VALUE})
+    public ResponseEntity<Object> contarPorComuna(@RequestParam(value="region", required=false) String region,
+                                                  @RequestParam(value="tramos", required=false) String tramos){
+        try{
+            return ResponseEntity.ok(userCountService.porComuna(region, UserCountService.parseTramos(tramos)));
+        }catch(IllegalArgumentException e){
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
     @PutMapping(value="/",
                 consumes=MediaType.APPLICATION_JSON_VALUE,
                 produces=MediaType.TEXT_PLAIN_VALUE)
@@ -133,18 +289,62 @@ public class UserController {
            user.getComuna().equals(0)){
             return ResponseEntity.badRequest().body("Todos los campos son obligatorios");
         }
+        if(!RutCodec.isValid(user.getRut())){
+            return RESPUESTA_RUT_INVALIDO;
+        }
         try{
-            new RUT(user.getRut());
             return userService.save(user) ?
-                ResponseEntity.status(HttpStatus.CREATED).body("Usuario guardado exitosamente") :
+                exito(HttpStatus.CREATED, "Usuario guardado exitosamente") :
                 ResponseEntity.status(HttpStatus.I_AM_A_TEAPOT).body("No se pudo guardar el usuario por razones desconocidas");
-        }catch(RUTException | RutRuntimeException e){
-            return RESPUESTA_RUT_INVALIDO;
         }catch(IllegalArgumentException e){
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage());
         }
     }
 
+    @PostMapping(value="/bulk",
+                 consumes=MediaType.APPLICATION_JSON_VALUE,
+                 produces={MediaType.APPLICATION_JSON_VALUE, MediaType.TEXT_PLAIN_VALUE})
+    public ResponseEntity<Object> importar(InputStream usuarios){
+        try{
+            ImportResultDto resultado = userImportService.importUsers(usuarios);
+            return resultado.getError() == null ? ResponseEntity.ok(resultado) : ResponseEntity.badRequest().body(resultado);
+        }catch(IllegalArgumentException e){
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }catch(IOException e){
+            return ResponseEntity.badRequest().body("El cuerpo debe ser un arreglo JSON de usuarios");
+        }
+    }
+
+    /*El cuerpo se escribe en otro hilo despues de que este metodo retorna, por eso el error va como StreamingResponseBody*/
+    @GetMapping(value="/export")
+    public ResponseEntity<StreamingResponseBody> exportar(
+            @RequestParam(value="format", defaultValue="ndjson") String format,
+            @RequestParam(value="gzip", defaultValue="false") boolean gzip){
+        FormatoExportacion formato;
+        try{
+            formato = FormatoExportacion.valueOf(format.trim().toUpperCase(Locale.ROOT));
+        }catch(IllegalArgumentException e){
+            byte[] mensaje = String.format("Formato de exportacion no reconocido: %s", format).getBytes(StandardCharsets.UTF_8);
+            return ResponseEntity.badRequest()
+                                 .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                                 .body(out -> out.write(mensaje));
+        }
+        ResponseEntity.BodyBuilder resp =
+            ResponseEntity.ok()
+                          .contentType(MediaType.parseMediaType(formato.getContentType() + ";charset=UTF-8"))
+                          .header(HttpHeaders.CONTENT_DISPOSITION,
+                                  ContentDisposition.attachment().filename("usuarios." + formato.getExtension()).build().toString());
+        if(!gzip){
+            return resp.body(out -> userService.export(formato, out));
+        }
+        return resp.header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                   .body(out -> {
+                       GZIPOutputStream comprimido = new GZIPOutputStream(out, 64 * 1024);
+                       userService.export(formato, comprimido);
+                       comprimido.finish();
+                   });
+    }
+
     @PutMapping(value="/{rut}",
             consumes=MediaType.APPLICATION_JSON_VALUE,
             produces=MediaType.TEXT_PLAIN_VALUE)
@@ -156,8 +356,10 @@ public class UserController {
                 rut == null || rut.isBlank() || user.getComuna().equals("0")){
             return ResponseEntity.badRequest().body("Todos los campos son obligatorios");
         }
+        if(!RutCodec.isValid(rut.trim())){
+            return RESPUESTA_RUT_INVALIDO;
+        }
         try{
-            new RUT(rut.trim());
             UserDto u = UserDto.builder()
                                .rut(rut.trim())
                                .nombre(user.getNombre().trim())
@@ -167,28 +369,70 @@ public class UserController {
                                .fechaNacimiento(user.getFechaNacimiento())
                                .build();
             return userService.update(u) ?
-                    ResponseEntity.ok("Usuario actualizado exitosamente") :
+                    exito(HttpStatus.OK, "Usuario actualizado exitosamente") :
                     ResponseEntity.status(HttpStatus.I_AM_A_TEAPOT).body("No se pudo actualizar el usuario por razones desconocidas");
-        }catch(RUTException | RutRuntimeException e){
-            return RESPUESTA_RUT_INVALIDO;
         }catch(IllegalArgumentException e){
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
         }
     }
 
+    @PostMapping(value="/batch/delete",
+                 consumes=MediaType.APPLICATION_JSON_VALUE,
+                 produces={MediaType.APPLICATION_JSON_VALUE, MediaType.TEXT_PLAIN_VALUE})
+    public ResponseEntity<Object> eliminarVarios(@RequestBody List<String> ruts){
+        try{
+            return ResponseEntity.ok(userBatchService.delete(ruts));
+        }catch(IllegalArgumentException e){
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @PutMapping(value="/batch",
+                consumes=MediaType.APPLICATION_JSON_VALUE,
+                produces={MediaType.APPLICATION_JSON_VALUE, MediaType.TEXT_PLAIN_VALUE})
+    public ResponseEntity<Object> actualizarVarios(@RequestBody List<UserDto> cambios){
+        try{
+            return ResponseEntity.ok(userBatchService.update(cambios));
+        }catch(IllegalArgumentException e){
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @PostMapping(value="/sync",
+                 consumes=MediaType.APPLICATION_JSON_VALUE,
+                 produces={MediaType.APPLICATION_JSON_VALUE, MediaType.TEXT_PLAIN_VALUE})
+    public ResponseEntity<Object> sincronizar(@RequestBody List<SyncActionDto> acciones){
+        try{
+            return ResponseEntity.ok(userBatchService.sync(acciones));
+        }catch(IllegalArgumentException e){
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @PutMapping(value="/porComuna/{origen}/{destino}",
+                produces=MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<String> moverDeComuna(@PathVariable("origen") Integer origen, @PathVariable("destino") Integer destino){
+        try{
+            int movidos = userBatchService.moveComuna(origen, destino);
+            return ResponseEntity.ok(String.format("Se movieron %d usuarios a la comuna %d", movidos, destino));
+        }catch(IllegalArgumentException e){
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
     @DeleteMapping(value="/{rut}",
             produces=MediaType.TEXT_PLAIN_VALUE)
     public ResponseEntity<String> eliminar(@PathVariable("rut") String rut){
         if(rut==null || rut.isBlank()){
             return ResponseEntity.badRequest().body("El RUT es obligatorio");
         }
+        if(!RutCodec.isValid(rut.trim())){
+            return RESPUESTA_RUT_INVALIDO;
+        }
         try {
-            new RUT(rut.trim());
             return userService.delete(rut) ?
-                    ResponseEntity.ok("Usuario eliminado exitosamente") :
+                    exito(HttpStatus.OK, "Usuario eliminado exitosamente") :
                     ResponseEntity.status(HttpStatus.I_AM_A_TEAPOT).body("No se pudo eliminar el usuario por razones desconocidas");
-        }catch(RUTException | RutRuntimeException e){
-            return RESPUESTA_RUT_INVALIDO;
         }catch(IllegalArgumentException e){
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
         }
@@ -0,0 +1,19 @@
+package cl.maraneda.previred.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchResultDto {
+    private int procesados;
+    private int exitosos;
+    private int rechazados;
+    private List<OperationResultDto> resultados;
+}
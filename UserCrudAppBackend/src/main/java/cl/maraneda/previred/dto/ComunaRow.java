@@ -0,0 +1,8 @@
+package cl.maraneda.previred.dto;
+
+/**
+ * Comuna leida sin cargar la entidad: la region es la llave foranea tal como esta en la tabla,
+ * aunque la region ya no exista.
+ */
+public record ComunaRow(Integer id, String nombre, String regionId) {
+}
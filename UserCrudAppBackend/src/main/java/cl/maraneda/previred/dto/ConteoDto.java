@@ -0,0 +1,27 @@
+package cl.maraneda.previred.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Cantidad de usuarios de una region (id String) o de una comuna (id Integer)
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ConteoDto<T> {
+    private T id;
+    private String nombre;
+    private long usuarios;
+    /**
+     * Usuarios por tramo de edad ("0-17", "18-29", ..., "60+"), en orden. Solo viene si se pidieron tramos.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Map<String, Long> porEdad;
+}
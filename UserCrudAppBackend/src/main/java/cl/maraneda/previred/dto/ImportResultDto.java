@@ -0,0 +1,27 @@
+package cl.maraneda.previred.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ImportResultDto {
+    private int procesados;
+    private int creados;
+    private int rechazados;
+    private List<OperationResultDto> resultados;
+    /*Solo si el arreglo se corto a mitad de camino: que paso y en que linea y columna del cuerpo*/
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String error;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer lineaError;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer columnaError;
+}
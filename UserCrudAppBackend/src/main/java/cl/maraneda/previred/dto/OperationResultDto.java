@@ -0,0 +1,20 @@
+package cl.maraneda.previred.dto;
+
+import cl.maraneda.previred.util.EstadoOperacion;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class OperationResultDto {
+    private int indice;
+    private String rut;
+    private EstadoOperacion estado;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String mensaje;
+}
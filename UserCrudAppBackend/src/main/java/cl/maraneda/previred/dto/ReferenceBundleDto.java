@@ -0,0 +1,18 @@
+package cl.maraneda.previred.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReferenceBundleDto {
+    private List<RegionDto> regiones;
+    private Map<String, List<ComunaDto>> comunas;
+}
@@ -0,0 +1,19 @@
+package cl.maraneda.previred.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class RegionDeleteResultDto {
+    private String region;
+    private int comunasEliminadas;
+    private int usuariosEliminados;
+    private int usuariosReasignados;
+    /*Comuna a la que se movieron los usuarios, o null si se eliminaron*/
+    private Integer comunaDestino;
+}
@@ -1,5 +1,6 @@
 package cl.maraneda.previred.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
@@ -15,6 +16,15 @@ public class SearchDto extends UserDto implements Cloneable{
     private String criteria;
     private String region;
 
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String operator;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer pageSize;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String cursor;
+
     public SearchDto clone() throws CloneNotSupportedException {
         return (SearchDto) super.clone();
     }
@@ -0,0 +1,18 @@
+package cl.maraneda.previred.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SearchPageDto {
+    /*Se escriben con UserSearchRowSerializer, sin pasar por SearchResultDto*/
+    private List<UserSearchRow> users;
+    private String nextCursor;
+}
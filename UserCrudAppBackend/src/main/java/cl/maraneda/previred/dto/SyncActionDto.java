@@ -0,0 +1,29 @@
+package cl.maraneda.previred.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Una accion de la cola de acciones pendientes del frontend (pending_user_actions)
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SyncActionDto {
+    /**
+     * create, update o delete
+     */
+    private String type;
+    /**
+     * El rut del usuario en update y delete (en create viene en el payload)
+     */
+    private String id;
+    private UserDto payload;
+    /**
+     * Cuando se hizo la accion, en milisegundos desde 1970
+     */
+    private Long timestamp;
+}
@@ -0,0 +1,22 @@
+package cl.maraneda.previred.dto;
+
+import cl.maraneda.previred.util.UserSearchRowSerializer;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.time.LocalDate;
+
+/**
+ * Fila de una busqueda de usuarios, obtenida en una sola consulta junto con los datos de la comuna.
+ * No es una entidad, por lo que no pasa por el contexto de persistencia ni dispara cargas perezosas.
+ * En las respuestas de busqueda se escribe como un SearchResultDto (ver {@link UserSearchRowSerializer}).
+ */
+@JsonSerialize(using = UserSearchRowSerializer.class)
+public record UserSearchRow(String rut,
+                            String nombre,
+                            String apellido,
+                            LocalDate fechaNacimiento,
+                            String calle,
+                            Integer comuna,
+                            String nombreComuna,
+                            String region) {
+}
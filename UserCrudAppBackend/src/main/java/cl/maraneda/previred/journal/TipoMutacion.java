@@ -0,0 +1,7 @@
+package cl.maraneda.previred.journal;
+
+public enum TipoMutacion {
+    GUARDAR,
+    ACTUALIZAR,
+    ELIMINAR
+}
@@ -0,0 +1,624 @@
+package cl.maraneda.previred.journal;
+
+import cl.maraneda.previred.model.User;
+import cl.maraneda.previred.repository.ComunaRepository;
+import cl.maraneda.previred.repository.UserRepository;
+import cl.maraneda.previred.service.UsersChangedEvent;
+import cl.maraneda.previred.util.Util;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Modo write-behind (previred.write-behind.enabled=true). Las escrituras de usuarios se validan en la peticion,
+ * se agregan a un diario local y se confirman al cliente apenas el diario queda en disco. Un hilo escribe en el
+ * diario todo lo que se acumulo mientras esperaba el fsync anterior (un fsync por grupo), y otro hilo aplica las
+ * mutaciones en la base de datos en transacciones de varias mutaciones.
+ * <p>
+ * Hasta que se aplican, las mutaciones se mantienen en memoria por rut, para que las validaciones (usuario
+ * existente o no) las consideren. Las lecturas esperan a que se aplique todo lo confirmado antes de ir a la base.
+ * Las escrituras que van directo a la base de datos (operaciones masivas) esperan a que se aplique todo lo
+ * registrado y no dejan registrar mutaciones nuevas hasta que terminan, para que nada se valide contra un estado viejo.
+ * Si la aplicacion se cae, al iniciar se aplica lo que quedo en el diario despues del ultimo punto de control y se
+ * publica {@link UserJournalReplayedEvent}.
+ * Se usan ReentrantLock y no synchronized para no retener el hilo portador con hilos virtuales.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "previred.write-behind.enabled", havingValue = "true")
+public class UserJournal implements SmartInitializingSingleton {
+    private static final String DIARIO = "usuarios.journal";
+    private static final String PUNTO_CONTROL = "usuarios.checkpoint";
+    private static final String DESCARTADAS = "usuarios.deadletter";
+    private static final long ESPERA_COLA_MS = 100;
+    private static final long REINTENTO_MS = 1000;
+
+    private record Pendiente(UserMutation mutacion, byte[] linea, CompletableFuture<Void> confirmada) {
+    }
+
+    /*Una linea del archivo de mutaciones descartadas*/
+    record Descartada(UserMutation mutacion, String error) {
+    }
+
+    private transient final UserRepository userRepository;
+    private transient final ComunaRepository comunaRepository;
+    private transient final TransactionTemplate transactionTemplate;
+    private transient final ObjectMapper objectMapper;
+    private transient final ApplicationEventPublisher eventPublisher;
+    private transient final Path diario;
+    private transient final Path puntoControl;
+    private transient final Path descartadas;
+    private transient final int loteMaximo;
+    private transient final long compactarBytes;
+    private transient final long esperaLecturaMs;
+    private transient final int maxReintentos;
+
+    private transient final BlockingQueue<Pendiente> porEscribir = new LinkedBlockingQueue<>();
+    private transient final BlockingQueue<UserMutation> porAplicar = new LinkedBlockingQueue<>();
+    /*La ultima mutacion aun no aplicada de cada rut*/
+    private transient final Map<String, UserMutation> pendientes = new ConcurrentHashMap<>();
+    private transient final ReentrantLock registro = new ReentrantLock();
+    /*registrar toma la de lectura; las escrituras directas, la de escritura (justa, para que no esperen para siempre)*/
+    private transient final ReentrantReadWriteLock directas = new ReentrantReadWriteLock(true);
+    private transient final ReentrantLock avance = new ReentrantLock();
+    private transient final Condition aplicadas = avance.newCondition();
+
+    private long siguiente;
+    private volatile long confirmada;
+    private volatile long aplicada;
+    private volatile boolean detenido;
+    /*Si una escritura en el diario falla, no se acepta nada mas hasta reiniciar*/
+    private volatile IOException fallo;
+    private FileChannel canal;
+    private Thread escritor;
+    private Thread aplicador;
+
+    @Autowired
+    public UserJournal(UserRepository repository, ComunaRepository crepository, TransactionTemplate template,
+                       ObjectMapper mapper, ApplicationEventPublisher publisher,
+                       @Value("${previred.write-behind.dir:journal}") Path directorio,
+                       @Value("${previred.write-behind.batch-size:500}") int loteMaximo,
+                       @Value("${previred.write-behind.compact-bytes:67108864}") long compactarBytes,
+                       @Value("${previred.write-behind.read-timeout-ms:30000}") long esperaLecturaMs,
+                       @Value("${previred.write-behind.max-retries:5}") int maxReintentos){
+        userRepository = repository;
+        comunaRepository = crepository;
+        transactionTemplate = template;
+        objectMapper = mapper;
+        eventPublisher = publisher;
+        diario = directorio.resolve(DIARIO);
+        puntoControl = directorio.resolve(PUNTO_CONTROL);
+        descartadas = directorio.resolve(DESCARTADAS);
+        this.loteMaximo = loteMaximo;
+        this.compactarBytes = compactarBytes;
+        this.esperaLecturaMs = esperaLecturaMs;
+        this.maxReintentos = maxReintentos;
+    }
+
+    /*
+     * Los SmartInitializingSingleton se crean aunque la inicializacion sea diferida, y esto corre despues de
+     * registrar los listeners de eventos y antes de que el servidor acepte peticiones: nadie lee datos sin lo que
+     * quedo en el diario, y quien ya haya contado desde la base de datos se entera del evento
+     */
+    @Override
+    public void afterSingletonsInstantiated(){
+        try{
+            start();
+        }catch(IOException e){
+            throw new UncheckedIOException("No se pudo abrir el diario de usuarios", e);
+        }
+    }
+
+    public void start() throws IOException {
+        Files.createDirectories(diario.getParent());
+        long ultima = Files.exists(puntoControl) ?
+            Long.parseLong(Files.readString(puntoControl, StandardCharsets.US_ASCII).trim()) : 0;
+        List<UserMutation> porReaplicar = leerDiario(ultima);
+        for(int i = 0; i < porReaplicar.size(); i += loteMaximo){
+            descartar(aplicarLote(porReaplicar.subList(i, Math.min(i + loteMaximo, porReaplicar.size())), true));
+        }
+        if(!porReaplicar.isEmpty()){
+            ultima = porReaplicar.getLast().secuencia();
+            guardarPuntoControl(ultima);
+            log.info("Se aplicaron {} mutaciones pendientes del diario de usuarios", porReaplicar.size());
+            eventPublisher.publishEvent(new UserJournalReplayedEvent(porReaplicar.size()));
+        }
+        siguiente = ultima;
+        confirmada = ultima;
+        aplicada = ultima;
+        canal = FileChannel.open(diario, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        canal.truncate(0);
+        canal.force(true);
+        escritor = Thread.ofPlatform().name("diario-usuarios-escritor").daemon().start(this::escribir);
+        aplicador = Thread.ofPlatform().name("diario-usuarios-aplicador").daemon().start(this::aplicar);
+    }
+
+    /*Lo que no alcanzo a aplicarse queda en el diario y se aplica al volver a iniciar*/
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        detenido = true;
+        if(escritor != null){
+            escritor.join(TimeUnit.SECONDS.toMillis(10));
+            aplicador.join(TimeUnit.SECONDS.toMillis(10));
+            canal.close();
+        }
+    }
+
+    /*
+     * Una linea incompleta solo puede quedar al final: es una escritura que no se alcanzo a confirmar y se descarta.
+     * Si despues de una linea danada vienen mutaciones validas, esas si se confirmaron: no se inicia, para no perderlas.
+     * El lector reemplaza los bytes UTF-8 cortados en vez de fallar.
+     */
+    private List<UserMutation> leerDiario(long desde) throws IOException {
+        List<UserMutation> mutaciones = new ArrayList<>();
+        if(!Files.exists(diario)){
+            return mutaciones;
+        }
+        try(BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(diario), StandardCharsets.UTF_8))){
+            String linea;
+            int numero = 0;
+            int danada = 0;
+            while((linea = reader.readLine()) != null){
+                numero++;
+                UserMutation m;
+                try{
+                    m = objectMapper.readValue(linea, UserMutation.class);
+                }catch(JsonProcessingException e){
+                    if(danada == 0){
+                        danada = numero;
+                    }
+                    continue;
+                }
+                if(danada > 0){
+                    throw new IllegalStateException(String.format(
+                        "La linea %d del diario de usuarios %s esta danada y le siguen mutaciones confirmadas: " +
+                        "revise el archivo antes de iniciar", danada, diario));
+                }
+                if(m.secuencia() > desde){
+                    mutaciones.add(m);
+                }
+            }
+            if(danada > 0){
+                log.warn("Se descarta el final del diario de usuarios despues de la mutacion {}",
+                         mutaciones.isEmpty() ? desde : mutaciones.getLast().secuencia());
+            }
+        }
+        return mutaciones;
+    }
+
+    /**
+     * Valida la mutacion contra lo ya aplicado y lo pendiente, y espera a que quede escrita en el diario
+     *
+     * @throws IllegalArgumentException Si se guarda un usuario que ya existe, o se modifica o elimina uno que no existe
+     * @throws IllegalStateException Si el diario se detuvo por un error de escritura anterior
+     */
+    public void registrar(TipoMutacion tipo, User user){
+        Pendiente p;
+        directas.readLock().lock();
+        try{
+            p = encolar(tipo, user);
+        }finally{
+            directas.readLock().unlock();
+        }
+        try{
+            p.confirmada().get();
+        }catch(ExecutionException e){
+            throw new IllegalStateException("No se pudo escribir en el diario de usuarios", e.getCause());
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrumpido mientras se escribia en el diario de usuarios", e);
+        }
+    }
+
+    /*
+     * La consulta a la base de datos se hace fuera del candado global. Si no hay mutacion pendiente para el rut, la
+     * base ya tiene su ultimo estado: el aplicador quita la pendiente recien despues del commit y las escrituras
+     * directas no corren mientras se tiene el candado de lectura. Si la pendiente cambio entre medio, se vuelve a validar.
+     */
+    private Pendiente encolar(TipoMutacion tipo, User user){
+        String rut = user.getRut();
+        while(true){
+            UserMutation vista = pendientes.get(rut);
+            boolean existe = vista != null ? vista.tipo() != TipoMutacion.ELIMINAR : userRepository.existsById(rut);
+            registro.lock();
+            try{
+                if(fallo != null){
+                    throw new IllegalStateException("El diario de usuarios esta detenido por un error de escritura", fallo);
+                }
+                if(pendientes.get(rut) != vista){
+                    continue;
+                }
+                if(tipo == TipoMutacion.GUARDAR && existe){
+                    throw new IllegalArgumentException("El usuario ya existe");
+                }
+                if(tipo != TipoMutacion.GUARDAR && !existe){
+                    throw Util.throwUnexistingUserException();
+                }
+                UserMutation m = UserMutation.of(siguiente + 1, tipo, user);
+                Pendiente p = new Pendiente(m, serializar(m), new CompletableFuture<>());
+                siguiente++;
+                pendientes.put(m.rut(), m);
+                porEscribir.add(p);
+                return p;
+            }finally{
+                registro.unlock();
+            }
+        }
+    }
+
+    private byte[] serializar(UserMutation m){
+        try{
+            ByteArrayOutputStream out = new ByteArrayOutputStream(160);
+            objectMapper.writeValue(out, m);
+            out.write('\n');
+            return out.toByteArray();
+        }catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Espera a que todas las mutaciones ya confirmadas a los clientes esten en la base de datos
+     */
+    public void esperarAplicadas(){
+        esperarHasta(confirmada);
+    }
+
+    /*Si el diario se detuvo, lo que no se alcanzo a escribir nunca se va a aplicar: se espera solo lo confirmado*/
+    private void esperarHasta(long objetivo){
+        long restante = TimeUnit.MILLISECONDS.toNanos(esperaLecturaMs);
+        avance.lock();
+        try{
+            while(aplicada < (fallo != null ? Math.min(objetivo, confirmada) : objetivo)){
+                if(restante <= 0){
+                    throw new IllegalStateException("Las escrituras pendientes no se aplicaron a tiempo");
+                }
+                restante = aplicadas.awaitNanos(restante);
+            }
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrumpido mientras se esperaban las escrituras pendientes", e);
+        }finally{
+            avance.unlock();
+        }
+    }
+
+    /**
+     * Antes de una escritura que va directo a la base de datos: espera a que se apliquen todas las mutaciones ya
+     * registradas y no deja registrar otras hasta que termine la transaccion actual
+     *
+     * @throws IllegalStateException Si no hay una transaccion activa, o si las mutaciones no se aplicaron a tiempo
+     */
+    public void bloquearRegistroEnTransaccion(){
+        if(!TransactionSynchronizationManager.isSynchronizationActive()){
+            throw new IllegalStateException("Se necesita una transaccion activa para bloquear el diario de usuarios");
+        }
+        bloquearRegistro();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status){
+                desbloquearRegistro();
+            }
+        });
+    }
+
+    /**
+     * Igual que {@link #bloquearRegistroEnTransaccion()}, para escrituras que usan varias transacciones:
+     * se debe llamar a {@link #desbloquearRegistro()} al terminar (en un finally)
+     */
+    public void bloquearRegistro(){
+        directas.writeLock().lock();
+        try{
+            long registradas;
+            registro.lock();
+            try{
+                registradas = siguiente;
+            }finally{
+                registro.unlock();
+            }
+            esperarHasta(registradas);
+        }catch(RuntimeException e){
+            directas.writeLock().unlock();
+            throw e;
+        }
+    }
+
+    public void desbloquearRegistro(){
+        directas.writeLock().unlock();
+    }
+
+    private void escribir(){
+        List<Pendiente> grupo = new ArrayList<>();
+        while(!detenido || !porEscribir.isEmpty()){
+            try{
+                Pendiente primero = porEscribir.poll(ESPERA_COLA_MS, TimeUnit.MILLISECONDS);
+                if(primero == null){
+                    continue;
+                }
+                grupo.add(primero);
+                porEscribir.drainTo(grupo, loteMaximo - 1);
+                escribirGrupo(grupo);
+            }catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+                return;
+            }finally{
+                grupo.clear();
+            }
+        }
+    }
+
+    private void escribirGrupo(List<Pendiente> grupo){
+        if(fallo != null){
+            rechazar(grupo, fallo);
+            return;
+        }
+        long inicio = -1;
+        try{
+            inicio = canal.position();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(grupo.size() * 160);
+            grupo.forEach(p -> bytes.writeBytes(p.linea()));
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while(buffer.hasRemaining()){
+                canal.write(buffer);
+            }
+            canal.force(false);
+        }catch(IOException e){
+            /*
+             * Lo que siga en la cola se valido contando con este grupo, asi que tampoco se puede escribir: el diario
+             * se detiene. Lo escrito a medias se quita para que al reiniciar no quede una linea danada en el medio.
+             */
+            log.error("No se pudo escribir en el diario de usuarios, no se aceptaran mas escrituras hasta reiniciar", e);
+            fallo = e;
+            descartarDesde(inicio);
+            rechazar(grupo, e);
+            avisarAvance();
+            return;
+        }
+        confirmada = grupo.getLast().mutacion().secuencia();
+        grupo.forEach(p -> porAplicar.add(p.mutacion()));
+        grupo.forEach(p -> p.confirmada().complete(null));
+        compactar();
+    }
+
+    private void descartarDesde(long inicio){
+        if(inicio < 0){
+            return;
+        }
+        try{
+            canal.truncate(inicio);
+            canal.force(true);
+        }catch(IOException e){
+            log.error("No se pudo descartar lo escrito a medias en el diario de usuarios: revise {} antes de reiniciar", diario, e);
+        }
+    }
+
+    private void rechazar(List<Pendiente> grupo, IOException e){
+        for(Pendiente p : grupo){
+            pendientes.remove(p.mutacion().rut(), p.mutacion());
+            p.confirmada().completeExceptionally(e);
+        }
+    }
+
+    /*Si todo lo escrito ya esta en la base de datos el diario se puede vaciar. Solo este hilo escribe en el canal.*/
+    private void compactar(){
+        try{
+            if(aplicada == confirmada && canal.size() > compactarBytes){
+                canal.truncate(0);
+                canal.force(true);
+            }
+        }catch(IOException e){
+            log.warn("No se pudo compactar el diario de usuarios", e);
+        }
+    }
+
+    /*
+     * Un lote que falla se reintenta entero. Despues de maxReintentos se aplica mutacion por mutacion, en su propia
+     * transaccion, y las que siguen fallando (por ejemplo, por una restriccion de la base de datos) se descartan en
+     * el archivo de mutaciones descartadas, para que una sola no detenga a todas las que vienen despues.
+     */
+    private void aplicar(){
+        List<UserMutation> lote = new ArrayList<>();
+        int intentos = 0;
+        while(!detenido){
+            try{
+                if(lote.isEmpty()){
+                    UserMutation primera = porAplicar.poll(ESPERA_COLA_MS, TimeUnit.MILLISECONDS);
+                    if(primera == null){
+                        continue;
+                    }
+                    lote.add(primera);
+                    porAplicar.drainTo(lote, loteMaximo - 1);
+                }
+                if(intentos < maxReintentos){
+                    descartar(aplicarLote(lote, false));
+                }else{
+                    aplicarUnaPorUna(lote);
+                }
+                guardarPuntoControl(lote.getLast().secuencia());
+                marcarAplicadas(lote);
+                lote.clear();
+                intentos = 0;
+            }catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+                return;
+            }catch(RuntimeException | IOException e){
+                intentos++;
+                log.error("No se pudo aplicar un lote del diario de usuarios (intento {} de {})", intentos, maxReintentos, e);
+                try{
+                    Thread.sleep(REINTENTO_MS);
+                }catch(InterruptedException ie){
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void aplicarUnaPorUna(List<UserMutation> lote) throws IOException {
+        for(UserMutation m : lote){
+            try{
+                descartar(aplicarLote(List.of(m), false));
+            }catch(RuntimeException e){
+                descartar(Map.of(m, String.valueOf(e.getMessage())));
+            }
+        }
+    }
+
+    /*Si no se pueden guardar, el lote se reintenta: no se avanza el punto de control sin dejarlas registradas*/
+    private void descartar(Map<UserMutation, String> mutaciones) throws IOException {
+        if(mutaciones.isEmpty()){
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(mutaciones.size() * 200);
+        for(Map.Entry<UserMutation, String> e : mutaciones.entrySet()){
+            UserMutation m = e.getKey();
+            log.error("Se descarta la mutacion {} del diario de usuarios ({} {}): {}", m.secuencia(), m.tipo(), m.rut(), e.getValue());
+            objectMapper.writeValue(bytes, new Descartada(m, e.getValue()));
+            bytes.write('\n');
+        }
+        try(FileChannel c = FileChannel.open(descartadas, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                             StandardOpenOption.APPEND)){
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while(buffer.hasRemaining()){
+                c.write(buffer);
+            }
+            c.force(true);
+        }
+    }
+
+    /**
+     * Al reaplicar el diario despues de una caida, un GUARDAR puede encontrar al usuario ya insertado:
+     * en ese caso se actualiza, porque lo que vale es el orden del diario. Por lo mismo, al reaplicar es normal
+     * que una modificacion no encuentre al usuario (se elimino mas adelante en el diario).
+     * <p>
+     * La comuna se revisa al aplicar y no solo al registrar: entre medio se pudo eliminar su region. Las comunas
+     * del lote quedan bloqueadas hasta el fin de la transaccion, asi que no se pueden eliminar mientras se aplica.
+     *
+     * @return Las mutaciones que no se aplicaron, con el motivo: las que usan una comuna que ya no existe y las
+     * modificaciones que no encontraron al usuario (estas ultimas nunca al reaplicar)
+     */
+    private Map<UserMutation, String> aplicarLote(List<UserMutation> lote, boolean reaplicando){
+        Map<UserMutation, String> rechazadas = new LinkedHashMap<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            rechazadas.clear();
+            List<Integer> usadas = lote.stream()
+                                       .filter(m -> m.tipo() != TipoMutacion.ELIMINAR)
+                                       .map(UserMutation::comuna)
+                                       .distinct()
+                                       .toList();
+            Set<Integer> comunas = usadas.isEmpty() ? Set.of() : new HashSet<>(comunaRepository.lockExisting(usadas));
+            /*Como va quedando cada usuario del lote: lo que habia antes se resta de lo que se mantiene en memoria*/
+            Map<String, User> actuales = userRepository.lockExisting(lote.stream().map(UserMutation::rut).distinct().toList());
+            List<User> nuevos = new ArrayList<>();
+            List<User> escritos = new ArrayList<>();
+            List<User> anteriores = new ArrayList<>();
+            for(UserMutation m : lote){
+                if(m.tipo() != TipoMutacion.ELIMINAR && !comunas.contains(m.comuna())){
+                    rechazadas.put(m, "La comuna no existia al aplicar la mutacion");
+                    continue;
+                }
+                User anterior = actuales.get(m.rut());
+                if(m.tipo() == TipoMutacion.GUARDAR && anterior == null){
+                    nuevos.add(m.toUser());
+                }else{
+                    /*Los INSERT acumulados van antes, para respetar el orden del diario*/
+                    insertar(nuevos);
+                    if(m.tipo() == TipoMutacion.ELIMINAR){
+                        userRepository.deleteByRut(m.rut());
+                    }else if(userRepository.updateByRut(m.rut(), m.nombre(), m.apellido(), m.fechaNacimiento(), m.calle(),
+                                                        comunaRepository.getReferenceById(m.comuna())) == 0 && !reaplicando){
+                        rechazadas.put(m, "El usuario no existia al aplicar la mutacion");
+                        continue;
+                    }
+                    if(anterior != null){
+                        anteriores.add(anterior);
+                    }
+                }
+                if(m.tipo() == TipoMutacion.ELIMINAR){
+                    actuales.remove(m.rut());
+                }else if(anterior != null || m.tipo() == TipoMutacion.GUARDAR){
+                    User nuevo = m.toUser();
+                    actuales.put(m.rut(), nuevo);
+                    escritos.add(nuevo);
+                }
+            }
+            insertar(nuevos);
+            /*Al reaplicar se avisa una sola vez al final, con UserJournalReplayedEvent*/
+            if(!reaplicando){
+                eventPublisher.publishEvent(new UsersChangedEvent(escritos, anteriores));
+            }
+        });
+        return rechazadas;
+    }
+
+    private void insertar(List<User> nuevos){
+        if(!nuevos.isEmpty()){
+            userRepository.insertAll(nuevos, loteMaximo);
+            nuevos.clear();
+        }
+    }
+
+    private void guardarPuntoControl(long secuencia) throws IOException {
+        Path temporal = puntoControl.resolveSibling(PUNTO_CONTROL + ".tmp");
+        try(FileChannel c = FileChannel.open(temporal, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                             StandardOpenOption.TRUNCATE_EXISTING)){
+            c.write(ByteBuffer.wrap(Long.toString(secuencia).getBytes(StandardCharsets.US_ASCII)));
+            c.force(true);
+        }
+        Files.move(temporal, puntoControl, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /*Se quitan de pendientes despues del commit, asi una validacion siempre ve al usuario en un lado o en el otro*/
+    private void marcarAplicadas(List<UserMutation> lote){
+        lote.forEach(m -> pendientes.remove(m.rut(), m));
+        aplicada = lote.getLast().secuencia();
+        avisarAvance();
+    }
+
+    private void avisarAvance(){
+        avance.lock();
+        try{
+            aplicadas.signalAll();
+        }finally{
+            avance.unlock();
+        }
+    }
+}
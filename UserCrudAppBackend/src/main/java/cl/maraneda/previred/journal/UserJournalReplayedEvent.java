@@ -0,0 +1,10 @@
+package cl.maraneda.previred.journal;
+
+/**
+ * Se publica al iniciar en modo write-behind, si se aplicaron mutaciones que quedaron en el diario, para que lo que
+ * se guarda en memoria a partir de la base de datos (indice de autocompletado, conteos por comuna) se vuelva a armar
+ *
+ * @param mutaciones Cuantas mutaciones se aplicaron
+ */
+public record UserJournalReplayedEvent(int mutaciones) {
+}
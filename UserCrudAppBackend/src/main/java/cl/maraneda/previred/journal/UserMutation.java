@@ -0,0 +1,36 @@
+package cl.maraneda.previred.journal;
+
+import cl.maraneda.previred.model.Comuna;
+import cl.maraneda.previred.model.User;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.LocalDate;
+
+/**
+ * Una linea del diario de usuarios. En las eliminaciones solo viene el rut.
+ *
+ * @param secuencia Numero correlativo, sirve para saber hasta donde se aplico el diario
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record UserMutation(long secuencia, TipoMutacion tipo, String rut, String nombre, String apellido,
+                           LocalDate fechaNacimiento, String calle, Integer comuna) {
+
+    public static UserMutation of(long secuencia, TipoMutacion tipo, User user){
+        if(tipo == TipoMutacion.ELIMINAR){
+            return new UserMutation(secuencia, tipo, user.getRut(), null, null, null, null, null);
+        }
+        return new UserMutation(secuencia, tipo, user.getRut(), user.getNombre(), user.getApellido(),
+                                user.getFechaNacimiento(), user.getCalle(), user.getComuna().getId());
+    }
+
+    public User toUser(){
+        return User.builder()
+                   .rut(rut)
+                   .nombre(nombre)
+                   .apellido(apellido)
+                   .fechaNacimiento(fechaNacimiento)
+                   .calle(calle)
+                   .comuna(comuna == null ? null : Comuna.builder().id(comuna).build())
+                   .build();
+    }
+}
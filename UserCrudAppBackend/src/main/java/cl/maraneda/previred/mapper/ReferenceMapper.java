@@ -0,0 +1,25 @@
+package cl.maraneda.previred.mapper;
+
+import cl.maraneda.previred.dto.ComunaDto;
+import cl.maraneda.previred.dto.RegionDto;
+import cl.maraneda.previred.model.Comuna;
+import cl.maraneda.previred.model.Region;
+import org.mapstruct.Mapper;
+import org.mapstruct.ReportingPolicy;
+
+import java.util.List;
+
+/**
+ * Mapeo de regiones y comunas a sus DTO. La implementacion la genera MapStruct al compilar (ReferenceMapperImpl),
+ * con llamadas directas a getters y builders en vez de la reflexion de ModelMapper.
+ */
+@Mapper(componentModel = "spring", unmappedTargetPolicy = ReportingPolicy.ERROR)
+public interface ReferenceMapper {
+    ComunaDto toComunaDto(Comuna comuna);
+
+    List<ComunaDto> toComunaDtos(List<Comuna> comunas);
+
+    RegionDto toRegionDto(Region region);
+
+    List<RegionDto> toRegionDtos(List<Region> regiones);
+}
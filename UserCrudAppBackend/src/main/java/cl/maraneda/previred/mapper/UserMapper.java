@@ -0,0 +1,62 @@
+package cl.maraneda.previred.mapper;
+
+import cl.maraneda.previred.dto.SearchResultDto;
+import cl.maraneda.previred.dto.UserDto;
+import cl.maraneda.previred.dto.UserSearchRow;
+import cl.maraneda.previred.model.User;
+import cl.maraneda.previred.util.Edad;
+import cl.maraneda.previred.util.UserSearchRowSerializer;
+import cl.maraneda.previred.util.Util;
+import org.mapstruct.Builder;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.Named;
+import org.mapstruct.ReportingPolicy;
+import org.mapstruct.factory.Mappers;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Mapeo de usuarios a UserDto y SearchResultDto, generado por MapStruct al compilar (UserMapperImpl).
+ * Se usa desde los metodos estaticos de Util, por eso no es un bean. Los DTO de usuario usan @SuperBuilder,
+ * asi que se arman con el constructor vacio y los setters.
+ */
+@Mapper(unmappedTargetPolicy = ReportingPolicy.ERROR, builder = @Builder(disableBuilder = true))
+public interface UserMapper {
+    UserMapper INSTANCE = Mappers.getMapper(UserMapper.class);
+
+    @Mapping(target = "fechaNacimiento", qualifiedByName = "fechaUsuario")
+    @Mapping(target = "comuna", source = "comuna.id")
+    UserDto toUserDto(User user);
+
+    @Mapping(target = "fechaNacimiento", qualifiedByName = "fechaBusqueda")
+    @Mapping(target = "comuna", source = "comuna.id")
+    @Mapping(target = "nombreComuna", source = "comuna.nombre")
+    @Mapping(target = "region", source = "comuna.region.id")
+    @Mapping(target = "criteria", ignore = true)
+    @Mapping(target = "operator", ignore = true)
+    @Mapping(target = "pageSize", ignore = true)
+    @Mapping(target = "cursor", ignore = true)
+    SearchResultDto toSearchResultDto(User user);
+
+    List<SearchResultDto> toSearchResultDtos(List<User> users);
+
+    @Mapping(target = "fechaNacimiento", qualifiedByName = "fechaBusqueda")
+    @Mapping(target = "criteria", ignore = true)
+    @Mapping(target = "operator", ignore = true)
+    @Mapping(target = "pageSize", ignore = true)
+    @Mapping(target = "cursor", ignore = true)
+    SearchResultDto toSearchResultDto(UserSearchRow row);
+
+    /*Formato historico de UserDto: "yyyy-MM-dd (N) años"*/
+    @Named("fechaUsuario")
+    default String fechaUsuario(LocalDate fecha){
+        return fecha == null ? null : Util.INPUT_DATE_FORMAT.format(fecha) + " (" + Edad.anios(fecha) + ") años";
+    }
+
+    @Named("fechaBusqueda")
+    default String fechaBusqueda(LocalDate fecha){
+        return fecha == null ? null : UserSearchRowSerializer.formatoBusqueda(fecha);
+    }
+}
@@ -0,0 +1,25 @@
+package cl.maraneda.previred.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Cuenta las sentencias SQL que Hibernate prepara en el hilo actual. Las que van directo
+ * por JdbcTemplate (carga masiva) no pasan por aqui.
+ */
+public class JdbcStatementCounter implements StatementInspector {
+    private static final ThreadLocal<long[]> SENTENCIAS = ThreadLocal.withInitial(() -> new long[1]);
+
+    public static void reiniciar(){
+        SENTENCIAS.get()[0] = 0;
+    }
+
+    public static long obtener(){
+        return SENTENCIAS.get()[0];
+    }
+
+    @Override
+    public String inspect(String sql){
+        SENTENCIAS.get()[0]++;
+        return sql;
+    }
+}
@@ -0,0 +1,85 @@
+package cl.maraneda.previred.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.function.Supplier;
+
+/**
+ * Metricas de la busqueda de usuarios, expuestas en /actuator/prometheus.
+ * Los tiempos por metodo de los repositorios los registra Spring Boot en spring.data.repository.invocations.
+ */
+@Component
+public class SearchMetrics {
+    public static final String LATENCIA = "previred.search.latency";
+    public static final String FILAS = "previred.search.rows";
+    public static final String SENTENCIAS = "previred.search.statements";
+    public static final String MAPEO = "previred.search.mapping";
+    public static final String SERVICIO = "previred.user.service";
+
+    private transient final MeterRegistry registry;
+
+    @Autowired
+    public SearchMetrics(MeterRegistry registry){
+        this.registry = registry;
+    }
+
+    /**
+     * Mide una busqueda completa del controlador: latencia, filas entregadas y sentencias SQL ejecutadas
+     *
+     * @param criterio El criterio de busqueda (solo valores del enum, para no multiplicar las series)
+     * @param busqueda La busqueda a medir
+     * @return La respuesta de la busqueda
+     */
+    public ResponseEntity<Object> buscar(String criterio, Supplier<ResponseEntity<Object>> busqueda){
+        JdbcStatementCounter.reiniciar();
+        Timer.Sample sample = Timer.start(registry);
+        ResponseEntity<Object> resp = null;
+        try{
+            resp = busqueda.get();
+            return resp;
+        }finally{
+            String status = resp == null ? "EXCEPTION" : String.valueOf(resp.getStatusCode().value());
+            sample.stop(Timer.builder(LATENCIA)
+                             .description("Latencia de POST /previred/user/search")
+                             .tags(Tags.of("criterio", criterio, "status", status))
+                             .publishPercentileHistogram()
+                             .register(registry));
+            DistributionSummary.builder(SENTENCIAS)
+                               .description("Sentencias SQL ejecutadas por busqueda")
+                               .tag("criterio", criterio)
+                               .publishPercentileHistogram()
+                               .register(registry)
+                               .record(JdbcStatementCounter.obtener());
+            DistributionSummary.builder(FILAS)
+                               .description("Usuarios entregados por busqueda")
+                               .tag("criterio", criterio)
+                               .publishPercentileHistogram()
+                               .register(registry)
+                               .record(resp != null && resp.getBody() instanceof Collection<?> filas ? filas.size() : 0);
+        }
+    }
+
+    public <T> T mapeo(Supplier<T> mapeo){
+        return Timer.builder(MAPEO)
+                    .description("Tiempo de armar la pagina de resultados")
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record(mapeo);
+    }
+
+    public <T> T servicio(String metodo, Supplier<T> llamada){
+        return Timer.builder(SERVICIO)
+                    .description("Tiempo de los metodos de UserService")
+                    .tag("metodo", metodo)
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record(llamada);
+    }
+}
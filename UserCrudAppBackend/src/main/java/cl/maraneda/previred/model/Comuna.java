@@ -13,7 +13,11 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
+/**
+ * La region se carga solo si se pide, sin arrastrar las demas comunas de la region
+ */
 @Entity
 @Table(name="comuna")
 @Data
@@ -29,7 +33,9 @@ public class Comuna {
     @Column(name="nombre", length=50, nullable=false)
     private String nombre;
 
-    @ManyToOne(fetch= FetchType.EAGER)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @ManyToOne(fetch= FetchType.LAZY)
     @JoinColumn(name="region_id", referencedColumnName = "id", foreignKey = @ForeignKey(name="none"))
     private Region region;
 }
@@ -12,11 +12,15 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 import org.hibernate.annotations.Cascade;
 
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Las comunas se cargan solo si se piden
+ */
 @Entity
 @Table(name="region")
 @Data
@@ -36,7 +40,9 @@ public class Region {
     private Integer orden;
 
     @Builder.Default
-    @OneToMany(mappedBy="region", cascade = CascadeType.REMOVE, orphanRemoval = true, fetch= FetchType.EAGER)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @OneToMany(mappedBy="region", cascade = CascadeType.REMOVE, orphanRemoval = true, fetch= FetchType.LAZY)
     @Cascade(org.hibernate.annotations.CascadeType.DELETE_ORPHAN)  // Hibernate-specific: Forces orphan delete
     private List<Comuna> comunas = new ArrayList<>();
 }
@@ -7,15 +7,14 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.OneToOne;
 import jakarta.persistence.Table;
-import jakarta.persistence.Temporal;
-import jakarta.persistence.TemporalType;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
+import lombok.ToString;
 
-import java.util.Date;
+import java.time.LocalDate;
 
 @Entity
 @Table(name="usuario")
@@ -36,12 +35,12 @@ public class User implements Comparable<User>{
     private String apellido;
 
     @Column(name="fecha_nacimiento", nullable=false)
-    @Temporal(TemporalType.DATE)
-    private Date fechaNacimiento;
+    private LocalDate fechaNacimiento;
 
     @Column(name="calle", length=50, nullable=false)
     private String calle;
 
+    @ToString.Exclude
     @OneToOne(fetch=FetchType.LAZY)
     @JoinColumn(name="comuna", referencedColumnName = "id")
     private Comuna comuna;
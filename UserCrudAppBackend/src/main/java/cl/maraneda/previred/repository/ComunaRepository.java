@@ -1,5 +1,6 @@
 package cl.maraneda.previred.repository;
 
+import cl.maraneda.previred.dto.ComunaRow;
 import cl.maraneda.previred.model.Comuna;
 import cl.maraneda.previred.model.Region;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -9,10 +10,12 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface ComunaRepository extends JpaRepository<Comuna, Integer> {
+    /*Para el select de comunas: la region no se carga*/
     @Query("SELECT c FROM Comuna c WHERE c.region.id=:region ORDER BY c.nombre ASC")
     List<Comuna> findByRegion(@Param("region") String region);
 
@@ -21,6 +24,31 @@ public interface ComunaRepository extends JpaRepository<Comuna, Integer> {
     @Modifying
     void deleteTestComunas();
 
-    @Query("SELECT c.region.id FROM Comuna c WHERE c.id = :id")
-    String findRegionId(@Param("id") Integer comunaId);
+    /**
+     * @return Cantidad de comunas eliminadas
+     */
+    @Query("DELETE FROM Comuna c WHERE c.region.id = :region")
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    int deleteByRegion(@Param("region") String region);
+
+    /**
+     * Bloquea las comunas hasta el fin de la transaccion, para que no se eliminen mientras se usan
+     *
+     * @return Las ids de las comunas que existen
+     */
+    @Query(value = "SELECT id FROM comuna WHERE id IN (:ids) FOR UPDATE", nativeQuery = true)
+    List<Integer> lockExisting(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Bloquea las comunas de la region hasta el fin de la transaccion
+     *
+     * @return Las ids de las comunas de la region
+     */
+    @Query(value = "SELECT id FROM comuna WHERE region_id = :region FOR UPDATE", nativeQuery = true)
+    List<Integer> lockByRegion(@Param("region") String region);
+
+    /*c.region.id es la llave foranea: no hace JOIN ni carga regiones*/
+    @Query("SELECT new cl.maraneda.previred.dto.ComunaRow(c.id, c.nombre, c.region.id) FROM Comuna c ORDER BY c.nombre ASC")
+    List<ComunaRow> findAllRows();
 }
@@ -2,14 +2,21 @@ package cl.maraneda.previred.repository;
 
 import cl.maraneda.previred.model.Region;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
-
-import java.util.Optional;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository
 public interface RegionRepository extends JpaRepository<Region, String>{
-    @Query("SELECT r FROM Region r LEFT JOIN FETCH r.comunas WHERE r.id = :id")
-    Optional<Region> findByIdWithComunas(@Param("id") String id);
+    /**
+     * Elimina la region con un solo DELETE, sin cargarla ni pasar por la cascada de sus comunas
+     *
+     * @return Cantidad de regiones eliminadas (0 si no existe)
+     */
+    @Query("DELETE FROM Region r WHERE r.id = :id")
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    int deleteByIdBulk(@Param("id") String id);
 }
@@ -0,0 +1,58 @@
+package cl.maraneda.previred.repository;
+
+import cl.maraneda.previred.model.User;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Operaciones masivas sobre usuarios que van directo por JDBC, sin pasar por el contexto de persistencia
+ */
+public interface UserBatchRepository {
+    /**
+     * @param ruts Los RUT a consultar (ya normalizados)
+     * @return Los RUT que ya existen en la base de datos
+     */
+    Set<String> findExistingRuts(Collection<String> ruts);
+
+    /**
+     * Lee los usuarios que existen y bloquea sus filas hasta el fin de la transaccion. Solo se carga la id de la comuna.
+     *
+     * @param ruts Los RUT a consultar (ya normalizados)
+     * @return Los usuarios que ya existen en la base de datos, por RUT
+     */
+    Map<String, User> lockExisting(Collection<String> ruts);
+
+    /**
+     * Inserta un usuario con un solo INSERT. Solo se usa la id de la comuna del usuario.
+     *
+     * @param user El usuario a insertar
+     * @throws org.springframework.dao.DuplicateKeyException Si ya existe un usuario con el mismo rut
+     */
+    void insert(User user);
+
+    /**
+     * Inserta los usuarios en lotes JDBC. Solo se usa la id de la comuna de cada usuario.
+     *
+     * @param users Los usuarios a insertar
+     * @param batchSize Cuantas filas se envian por lote
+     */
+    void insertAll(List<User> users, int batchSize);
+
+    /**
+     * Actualiza varios usuarios en lotes JDBC. En cada usuario, los campos nulos no se modifican.
+     *
+     * @param cambios Los usuarios con los campos a modificar
+     * @param batchSize Cuantas filas se envian por lote
+     * @return Por cada usuario (en el mismo orden), si se actualizo
+     */
+    boolean[] bulkUpdate(List<User> cambios, int batchSize);
+
+    /**
+     * @param ruts Los RUT de los usuarios a eliminar (ya normalizados)
+     * @return Cantidad de usuarios eliminados
+     */
+    int bulkDelete(Collection<String> ruts);
+}
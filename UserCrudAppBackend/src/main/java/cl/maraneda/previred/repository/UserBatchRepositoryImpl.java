@@ -0,0 +1,138 @@
+package cl.maraneda.previred.repository;
+
+import cl.maraneda.previred.model.Comuna;
+import cl.maraneda.previred.model.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+public class UserBatchRepositoryImpl implements UserBatchRepository {
+    /*Algunos motores (ej. Oracle) no aceptan mas de 1000 elementos en un IN*/
+    private static final int MAX_IN = 1000;
+
+    private static final String INSERT =
+        "INSERT INTO usuario(rut, nombre, apellido, fecha_nacimiento, calle, comuna) VALUES (?, ?, ?, ?, ?, ?)";
+
+    /*Los campos nulos quedan como estaban, asi todos los cambios usan la misma sentencia y van en un solo lote*/
+    private static final String UPDATE =
+        "UPDATE usuario SET nombre = COALESCE(?, nombre), apellido = COALESCE(?, apellido), " +
+        "fecha_nacimiento = COALESCE(?, fecha_nacimiento), calle = COALESCE(?, calle), comuna = COALESCE(?, comuna) " +
+        "WHERE rut = ?";
+
+    private static final String COLUMNAS = "rut, nombre, apellido, fecha_nacimiento, calle, comuna";
+
+    private static final RowMapper<User> FILA = (rs, n) -> {
+        int comuna = rs.getInt(6);
+        return User.builder()
+                   .rut(rs.getString(1))
+                   .nombre(rs.getString(2))
+                   .apellido(rs.getString(3))
+                   .fechaNacimiento(rs.getObject(4, LocalDate.class))
+                   .calle(rs.getString(5))
+                   .comuna(rs.wasNull() ? null : Comuna.builder().id(comuna).build())
+                   .build();
+    };
+
+    private transient final NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public UserBatchRepositoryImpl(NamedParameterJdbcTemplate template){
+        jdbcTemplate = template;
+    }
+
+    private static void porBloques(Collection<String> ruts, Consumer<List<String>> accion){
+        List<String> bloque = new ArrayList<>(Math.min(ruts.size(), MAX_IN));
+        for(String rut : ruts){
+            bloque.add(rut);
+            if(bloque.size() == MAX_IN){
+                accion.accept(bloque);
+                bloque = new ArrayList<>(MAX_IN);
+            }
+        }
+        if(!bloque.isEmpty()){
+            accion.accept(bloque);
+        }
+    }
+
+    private Set<String> existentes(Collection<String> ruts, String sql){
+        Set<String> existentes = new HashSet<>();
+        porBloques(ruts, bloque ->
+            jdbcTemplate.query(sql, Map.of("ruts", bloque), rs -> { existentes.add(rs.getString(1)); }));
+        return existentes;
+    }
+
+    @Override
+    public Set<String> findExistingRuts(Collection<String> ruts){
+        return existentes(ruts, "SELECT rut FROM usuario WHERE rut IN (:ruts)");
+    }
+
+    @Override
+    public Map<String, User> lockExisting(Collection<String> ruts){
+        Map<String, User> existentes = new HashMap<>();
+        porBloques(ruts, bloque ->
+            jdbcTemplate.query("SELECT " + COLUMNAS + " FROM usuario WHERE rut IN (:ruts) FOR UPDATE",
+                               Map.of("ruts", bloque), FILA).forEach(u -> existentes.put(u.getRut(), u)));
+        return existentes;
+    }
+
+    private static void bind(PreparedStatement ps, User u) throws SQLException {
+        ps.setString(1, u.getRut());
+        ps.setString(2, u.getNombre());
+        ps.setString(3, u.getApellido());
+        ps.setObject(4, u.getFechaNacimiento());
+        ps.setString(5, u.getCalle());
+        ps.setInt(6, u.getComuna().getId());
+    }
+
+    @Override
+    public void insert(User user){
+        jdbcTemplate.getJdbcTemplate().update(INSERT, ps -> bind(ps, user));
+    }
+
+    @Override
+    public void insertAll(List<User> users, int batchSize){
+        jdbcTemplate.getJdbcTemplate().batchUpdate(INSERT, users, batchSize, UserBatchRepositoryImpl::bind);
+    }
+
+    @Override
+    public boolean[] bulkUpdate(List<User> cambios, int batchSize){
+        int[][] filas = jdbcTemplate.getJdbcTemplate().batchUpdate(UPDATE, cambios, batchSize, (ps, u) -> {
+            ps.setString(1, u.getNombre());
+            ps.setString(2, u.getApellido());
+            ps.setObject(3, u.getFechaNacimiento(), Types.DATE);
+            ps.setString(4, u.getCalle());
+            ps.setObject(5, u.getComuna() != null ? u.getComuna().getId() : null, Types.INTEGER);
+            ps.setString(6, u.getRut());
+        });
+        boolean[] actualizados = new boolean[cambios.size()];
+        int i = 0;
+        for(int[] lote : filas){
+            for(int n : lote){
+                actualizados[i++] = n > 0 || n == Statement.SUCCESS_NO_INFO;
+            }
+        }
+        return actualizados;
+    }
+
+    @Override
+    public int bulkDelete(Collection<String> ruts){
+        int[] eliminados = new int[1];
+        porBloques(ruts, bloque ->
+            eliminados[0] += jdbcTemplate.update("DELETE FROM usuario WHERE rut IN (:ruts)", Map.of("ruts", bloque)));
+        return eliminados[0];
+    }
+}
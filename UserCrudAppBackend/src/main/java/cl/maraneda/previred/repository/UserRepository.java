@@ -1,5 +1,6 @@
 package cl.maraneda.previred.repository;
 
+import cl.maraneda.previred.model.Comuna;
 import cl.maraneda.previred.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
@@ -8,20 +9,65 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.List;
+import java.time.LocalDate;
 
+/**
+ * Las busquedas (ver {@link UserSearchRepository}) usan keyset sobre la llave primaria (rut):
+ * cada pagina parte desde el ultimo rut entregado en vez de usar OFFSET, por lo que el costo
+ * de una pagina no depende de cuantas paginas se hayan leido antes.
+ */
 @Repository
-public interface UserRepository extends JpaRepository<User, String> {
-    List<User> findByNombre(String nombre);
-    List<User> findByApellido(String apellido);
+public interface UserRepository extends JpaRepository<User, String>, UserSearchRepository, UserBatchRepository {
+    /**
+     * Actualiza el usuario en una sola sentencia, sin leerlo antes
+     *
+     * @return Cantidad de usuarios actualizados (0 si el rut no existe)
+     */
+    @Query("UPDATE User u SET u.nombre = :nombre, u.apellido = :apellido, u.fechaNacimiento = :fechaNacimiento, " +
+           "u.calle = :calle, u.comuna = :comuna WHERE u.rut = :rut")
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    int updateByRut(@Param("rut") String rut, @Param("nombre") String nombre, @Param("apellido") String apellido,
+                    @Param("fechaNacimiento") LocalDate fechaNacimiento, @Param("calle") String calle,
+                    @Param("comuna") Comuna comuna);
+
+    /**
+     * @return Cantidad de usuarios eliminados (0 si el rut no existe)
+     */
+    @Query("DELETE FROM User u WHERE u.rut = :rut")
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    int deleteByRut(@Param("rut") String rut);
 
-    List<User> findByNombreAndApellido(String nombre, String apellido);
+    /**
+     * Mueve todos los usuarios de una comuna a otra (por ejemplo, cuando se fusionan comunas)
+     *
+     * @return Cantidad de usuarios movidos
+     */
+    @Query("UPDATE User u SET u.comuna = :destino WHERE u.comuna = :origen")
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    int moveComuna(@Param("origen") Comuna origen, @Param("destino") Comuna destino);
 
-    @Query("SELECT u FROM User u WHERE u.comuna.region.id=:id")
-    List<User> findByRegion(@Param("id") String id);
+    /**
+     * Mueve a la comuna destino todos los usuarios de las comunas de la region, con un solo UPDATE
+     *
+     * @return Cantidad de usuarios movidos
+     */
+    @Query("UPDATE User u SET u.comuna = :destino WHERE u.comuna.id IN (SELECT c.id FROM Comuna c WHERE c.region.id = :region)")
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    int moveRegion(@Param("region") String regionId, @Param("destino") Comuna destino);
 
-    @Query("SELECT u FROM User u WHERE u.comuna.id=CAST(:id AS INTEGER)")
-    List<User> findByComuna(@Param("id") String id);
+    /**
+     * Elimina todos los usuarios de las comunas de la region, con un solo DELETE
+     *
+     * @return Cantidad de usuarios eliminados
+     */
+    @Query("DELETE FROM User u WHERE u.comuna.id IN (SELECT c.id FROM Comuna c WHERE c.region.id = :region)")
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    int deleteByRegion(@Param("region") String regionId);
 
     @Query("DELETE FROM User u WHERE u.nombre='Test'")
     @Transactional
@@ -0,0 +1,73 @@
+package cl.maraneda.previred.repository;
+
+import cl.maraneda.previred.util.FiltroBusqueda;
+import jakarta.persistence.Query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.function.Function;
+
+/**
+ * Consulta JPQL ya armada para una "forma" de filtro (que campos vienen y con que operador).
+ * El texto depende solo de la forma y nunca de los valores, asi que se arma una vez por forma
+ * y Hibernate reutiliza su interpretacion en cada ejecucion.
+ */
+record UserSearchPlan(String jpql, List<Campo> campos) {
+    private static final int DISYUNCION = 1 << Campo.values().length;
+
+    /*Proyeccion con la comuna unida en la misma consulta: una sentencia por busqueda sin importar cuantas filas entregue*/
+    private static final String SELECT =
+        "SELECT new cl.maraneda.previred.dto.UserSearchRow(" +
+            "u.rut, u.nombre, u.apellido, u.fechaNacimiento, u.calle, c.id, c.nombre, c.region.id) " +
+        "FROM User u LEFT JOIN u.comuna c";
+
+    enum Campo {
+        NOMBRE("u.nombre = :nombre", "nombre", FiltroBusqueda::nombre),
+        APELLIDO("u.apellido = :apellido", "apellido", FiltroBusqueda::apellido),
+        /*Sobre la columna comuna de usuario (y no sobre la tabla unida) para que se usen idx_usuario_comuna e idx_comuna_region*/
+        REGION("u.comuna.id IN (SELECT r.id FROM Comuna r WHERE r.region.id = :region)", "region", FiltroBusqueda::region),
+        COMUNA("u.comuna.id = :comuna", "comuna", FiltroBusqueda::comuna),
+        RUT("u.rut = :rut", "rut", FiltroBusqueda::rut);
+
+        private final String predicado;
+        private final String parametro;
+        private final Function<FiltroBusqueda, Object> valor;
+
+        Campo(String predicado, String parametro, Function<FiltroBusqueda, Object> valor){
+            this.predicado = predicado;
+            this.parametro = parametro;
+            this.valor = valor;
+        }
+    }
+
+    static int forma(FiltroBusqueda filtro){
+        int forma = 0;
+        for(Campo c : Campo.values()){
+            if(c.valor.apply(filtro) != null){
+                forma |= 1 << c.ordinal();
+            }
+        }
+        return filtro.disyuncion() ? forma | DISYUNCION : forma;
+    }
+
+    static UserSearchPlan compilar(int forma){
+        List<Campo> campos = new ArrayList<>();
+        StringJoiner condiciones = new StringJoiner((forma & DISYUNCION) != 0 ? " OR " : " AND ", " AND (", ")");
+        condiciones.setEmptyValue("");
+        for(Campo c : Campo.values()){
+            if((forma & (1 << c.ordinal())) != 0){
+                campos.add(c);
+                condiciones.add(c.predicado);
+            }
+        }
+        return new UserSearchPlan(SELECT + " WHERE u.rut > :cursor" + condiciones + " ORDER BY u.rut ASC",
+                                  List.copyOf(campos));
+    }
+
+    void bind(Query query, FiltroBusqueda filtro){
+        for(Campo c : campos){
+            query.setParameter(c.parametro, c.valor.apply(filtro));
+        }
+    }
+}
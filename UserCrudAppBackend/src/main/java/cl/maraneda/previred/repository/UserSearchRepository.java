@@ -0,0 +1,30 @@
+package cl.maraneda.previred.repository;
+
+import cl.maraneda.previred.dto.UserSearchRow;
+import cl.maraneda.previred.util.FiltroBusqueda;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface UserSearchRepository {
+    /**
+     * Busca usuarios con cualquier combinacion de filtros en una sola consulta,
+     * ordenados por rut y a partir del rut indicado (keyset).
+     *
+     * @param filtro Los filtros de la busqueda
+     * @param cursor El ultimo rut ya entregado, o "" para la primera pagina
+     * @param limite Cantidad maxima de usuarios a obtener
+     * @return Los usuarios que cumplen con los filtros
+     */
+    List<UserSearchRow> search(FiltroBusqueda filtro, String cursor, int limite);
+
+    /**
+     * Recorre los usuarios que cumplen con los filtros con un cursor de solo avance, ordenados por rut.
+     * Debe usarse dentro de una transaccion y cerrarse al terminar.
+     *
+     * @param filtro Los filtros de la busqueda
+     * @param fetchSize Cuantas filas se traen desde la base de datos en cada viaje
+     * @return Los usuarios, leidos a medida que se consumen
+     */
+    Stream<UserSearchRow> stream(FiltroBusqueda filtro, int fetchSize);
+}
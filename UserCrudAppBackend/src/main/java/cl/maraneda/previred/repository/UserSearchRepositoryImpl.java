@@ -0,0 +1,39 @@
+package cl.maraneda.previred.repository;
+
+import cl.maraneda.previred.dto.UserSearchRow;
+import cl.maraneda.previred.util.FiltroBusqueda;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.jpa.HibernateHints;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+public class UserSearchRepositoryImpl implements UserSearchRepository {
+    private static final Map<Integer, UserSearchPlan> PLANES = new ConcurrentHashMap<>();
+
+    @PersistenceContext
+    private transient EntityManager entityManager;
+
+    private TypedQuery<UserSearchRow> query(FiltroBusqueda filtro, String cursor){
+        UserSearchPlan plan = PLANES.computeIfAbsent(UserSearchPlan.forma(filtro), UserSearchPlan::compilar);
+        TypedQuery<UserSearchRow> query = entityManager.createQuery(plan.jpql(), UserSearchRow.class)
+                                                       .setParameter("cursor", cursor);
+        plan.bind(query, filtro);
+        return query;
+    }
+
+    @Override
+    public List<UserSearchRow> search(FiltroBusqueda filtro, String cursor, int limite){
+        return query(filtro, cursor).setMaxResults(limite).getResultList();
+    }
+
+    /*Es una proyeccion, asi que las filas no quedan en el contexto de persistencia mientras se recorren*/
+    @Override
+    public Stream<UserSearchRow> stream(FiltroBusqueda filtro, int fetchSize){
+        return query(filtro, "").setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize).getResultStream();
+    }
+}
@@ -0,0 +1,7 @@
+package cl.maraneda.previred.service;
+
+/**
+ * Se publica cuando cambian las regiones o las comunas, para que la foto en memoria se vuelva a armar
+ */
+public record ReferenceDataChangedEvent(String motivo) {
+}
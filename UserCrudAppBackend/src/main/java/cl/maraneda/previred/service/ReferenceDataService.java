@@ -0,0 +1,94 @@
+package cl.maraneda.previred.service;
+
+import cl.maraneda.previred.dto.ComunaRow;
+import cl.maraneda.previred.dto.RegionDto;
+import cl.maraneda.previred.mapper.ReferenceMapper;
+import cl.maraneda.previred.repository.ComunaRepository;
+import cl.maraneda.previred.repository.RegionRepository;
+import cl.maraneda.previred.util.ReferenceSnapshot;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Mantiene en memoria las regiones y comunas, que casi nunca cambian, para no ir a la base de datos
+ * cada vez que se despliega un select. La foto se reemplaza completa despues de cada cambio confirmado.
+ */
+@Service
+public class ReferenceDataService {
+    private transient final RegionRepository regionRepository;
+    private transient final ComunaRepository comunaRepository;
+    private transient final ObjectMapper objectMapper;
+    private transient final ReferenceMapper referenceMapper;
+    private transient final AtomicReference<ReferenceSnapshot> snapshot = new AtomicReference<>();
+    /*Regiones que se estan eliminando: quedan fuera de la foto aunque su transaccion aun no se confirme*/
+    private transient final Set<String> retiradas = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public ReferenceDataService(RegionRepository rrepository, ComunaRepository crepository, ObjectMapper mapper,
+                                ReferenceMapper rmapper){
+        regionRepository = rrepository;
+        comunaRepository = crepository;
+        objectMapper = mapper;
+        referenceMapper = rmapper;
+    }
+
+    public ReferenceSnapshot snapshot(){
+        ReferenceSnapshot actual = snapshot.get();
+        return actual != null ? actual : refresh();
+    }
+
+    /*synchronized para que una foto armada antes nunca reemplace a una armada despues*/
+    @Transactional(readOnly = true)
+    public synchronized ReferenceSnapshot refresh(){
+        List<RegionDto> regiones =
+            referenceMapper.toRegionDtos(regionRepository.findAll(Sort.by(Sort.Direction.ASC, "orden")));
+        List<ComunaRow> comunas = comunaRepository.findAllRows();
+        if(!retiradas.isEmpty()){
+            regiones = regiones.stream().filter(r -> !retiradas.contains(r.getId())).toList();
+            comunas = comunas.stream().filter(c -> !retiradas.contains(c.regionId())).toList();
+        }
+        ReferenceSnapshot nueva = ReferenceSnapshot.of(regiones, comunas, objectMapper);
+        snapshot.set(nueva);
+        return nueva;
+    }
+
+    /**
+     * Saca de la foto la region y sus comunas mientras dura la transaccion actual, que las va a eliminar: las
+     * validaciones dejan de aceptarlas antes de que se borren. Si la transaccion no se confirma, vuelven a la foto.
+     *
+     * @throws IllegalStateException Si no hay una transaccion activa
+     */
+    public synchronized void retirarRegion(String regionId){
+        if(!TransactionSynchronizationManager.isSynchronizationActive()){
+            throw new IllegalStateException("Se necesita una transaccion activa para retirar una region");
+        }
+        retiradas.add(regionId);
+        snapshot.set(snapshot().sinRegion(regionId, objectMapper));
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status){
+                retiradas.remove(regionId);
+                /*Si se confirmo, la foto ya se volvio a armar con ReferenceDataChangedEvent*/
+                if(status != STATUS_COMMITTED){
+                    refresh();
+                }
+            }
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReferenceDataChanged(ReferenceDataChangedEvent event){
+        refresh();
+    }
+}
@@ -1,58 +1,108 @@
 package cl.maraneda.previred.service;
 
+import cl.maraneda.previred.dto.RegionDeleteResultDto;
 import cl.maraneda.previred.dto.RegionDto;
-import cl.maraneda.previred.model.Comuna;
-import cl.maraneda.previred.model.Region;
+import cl.maraneda.previred.journal.UserJournal;
+import cl.maraneda.previred.mapper.ReferenceMapper;
+import cl.maraneda.previred.repository.ComunaRepository;
 import cl.maraneda.previred.repository.RegionRepository;
-import jakarta.persistence.EntityManager;
+import cl.maraneda.previred.repository.UserRepository;
+import cl.maraneda.previred.util.ReferenceSnapshot;
+import cl.maraneda.previred.util.Util;
 import jakarta.persistence.EntityNotFoundException;
-import jakarta.persistence.PersistenceContext;
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
 public class RegionService {
     private transient final RegionRepository regionRepository;
-    private transient final ModelMapper modelMapper;
+    private transient final ComunaRepository comunaRepository;
+    private transient final UserRepository userRepository;
+    private transient final ReferenceDataService referenceDataService;
+    private transient final ReferenceMapper referenceMapper;
+    private transient final ApplicationEventPublisher eventPublisher;
 
-    @PersistenceContext  // For manual flush if needed
-    private transient EntityManager entityManager;
+    /*Solo existe en modo write-behind*/
+    @Autowired(required = false)
+    private transient UserJournal journal;
 
     @Autowired
-    public RegionService(RegionRepository repository, ModelMapper mapper){
+    public RegionService(RegionRepository repository, ComunaRepository crepository, UserRepository urepository,
+                         ReferenceDataService rdservice, ReferenceMapper mapper, ApplicationEventPublisher publisher){
         regionRepository = repository;
-        modelMapper = mapper;
+        comunaRepository = crepository;
+        userRepository = urepository;
+        referenceDataService = rdservice;
+        referenceMapper = mapper;
+        eventPublisher = publisher;
     }
 
     public List<RegionDto> findAllOrdered(){
-        return regionRepository.findAll(Sort.by(Sort.Direction.ASC, "orden"))
-                               .stream()
-                               .map(r -> modelMapper.map(r, RegionDto.class))
-                               .collect(Collectors.toList());
+        return referenceMapper.toRegionDtos(regionRepository.findAll(Sort.by(Sort.Direction.ASC, "orden")));
     }
 
+    /**
+     * Elimina la region, sus comunas y los usuarios que viven en ellas (o los mueve a otra comuna) con una
+     * sentencia por tabla, en una sola transaccion y sin cargar entidades
+     *
+     * @param regionId La region a eliminar
+     * @param comunaDestino Comuna de otra region a la que se mueven los usuarios. Si es null, los usuarios se eliminan.
+     * @return Cuantas filas se eliminaron o movieron de cada tabla
+     * @throws EntityNotFoundException Si la region no existe
+     * @throws IllegalArgumentException Si la comuna destino no existe o pertenece a la region que se elimina
+     */
     @Transactional
-    public void deleteRegion(String regionId) {
-        // Step 1: Fetch with eager comunas to initialize
-        Region region = regionRepository.findByIdWithComunas(regionId)
-                .orElseThrow(() -> new EntityNotFoundException("Region not found: " + regionId));
-
-        // Step 2: Sync bidirectional and orphan (nullify owning FKs)
-        for (Comuna comuna : region.getComunas()) {
-            comuna.setRegion(null);  // Nullify owning side FK
+    public RegionDeleteResultDto deleteRegion(String regionId, Integer comunaDestino) {
+        if(regionId == null || !regionRepository.existsById(regionId)){
+            throw new EntityNotFoundException("La region especificada no existe");
+        }
+        if(comunaDestino != null){
+            ReferenceSnapshot referencia = referenceDataService.snapshot();
+            if(!referencia.existeComuna(comunaDestino)){
+                throw Util.throwUnexistingCommunaException();
+            }
+            if(regionId.equals(referencia.regionDeComuna(comunaDestino))){
+                throw new IllegalArgumentException("La comuna de destino pertenece a la region que se elimina");
+            }
+        }
+        /*Desde aqui ninguna validacion acepta las comunas de la region*/
+        referenceDataService.retirarRegion(regionId);
+        /*En modo write-behind se aplican primero las escrituras individuales ya registradas y no se registran otras*/
+        if(journal != null){
+            journal.bloquearRegistroEnTransaccion();
+        }
+        /*Quien use estas comunas (o la de destino) en otra transaccion espera a que esta termine*/
+        comunaRepository.lockByRegion(regionId);
+        if(comunaDestino != null && comunaRepository.lockExisting(List.of(comunaDestino)).isEmpty()){
+            throw Util.throwUnexistingCommunaException();
         }
-        region.getComunas().clear();  // Calls setRegion(null) on each comuna
 
-        // Step 3: Flush to persist orphans as deleted
-        entityManager.flush();  // Ensures DELETEs for comunas before region delete
+        int reasignados = 0;
+        int eliminados = 0;
+        if(comunaDestino != null){
+            reasignados = userRepository.moveRegion(regionId, comunaRepository.getReferenceById(comunaDestino));
+        }else{
+            eliminados = userRepository.deleteByRegion(regionId);
+        }
+        int comunas = comunaRepository.deleteByRegion(regionId);
+        regionRepository.deleteByIdBulk(regionId);
 
-        // Step 4: Delete region (now safe)
-        regionRepository.delete(region);
+        /*Ambos eventos se procesan solo si la transaccion se confirma*/
+        eventPublisher.publishEvent(new ReferenceDataChangedEvent("Region eliminada: " + regionId));
+        if(reasignados > 0 || eliminados > 0){
+            eventPublisher.publishEvent(UsersChangedEvent.desconocidos());
+        }
+        return RegionDeleteResultDto.builder()
+                                    .region(regionId)
+                                    .comunasEliminadas(comunas)
+                                    .usuariosEliminados(eliminados)
+                                    .usuariosReasignados(reasignados)
+                                    .comunaDestino(comunaDestino)
+                                    .build();
     }
 }
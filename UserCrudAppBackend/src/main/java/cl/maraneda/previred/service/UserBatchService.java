@@ -0,0 +1,443 @@
+package cl.maraneda.previred.service;
+
+import cl.maraneda.previred.dto.BatchResultDto;
+import cl.maraneda.previred.dto.OperationResultDto;
+import cl.maraneda.previred.dto.SyncActionDto;
+import cl.maraneda.previred.dto.UserDto;
+import cl.maraneda.previred.journal.TipoMutacion;
+import cl.maraneda.previred.journal.UserJournal;
+import cl.maraneda.previred.model.Comuna;
+import cl.maraneda.previred.model.User;
+import cl.maraneda.previred.repository.ComunaRepository;
+import cl.maraneda.previred.repository.UserRepository;
+import cl.maraneda.previred.util.EstadoOperacion;
+import cl.maraneda.previred.util.ReferenceSnapshot;
+import cl.maraneda.previred.util.RutCodec;
+import cl.maraneda.previred.util.Util;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.DateTimeException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Eliminacion y actualizacion de varios usuarios en una sola peticion. La lista completa se valida
+ * primero en memoria y luego se aplica con sentencias por conjunto (IN) o en lotes JDBC, en una sola transaccion.
+ */
+@Service
+public class UserBatchService {
+    private static final String RUT_INVALIDO = "Formato de rut invalido o Rut no concuerda con digito verificador";
+    private static final String REPETIDO = "El rut viene repetido en la lista";
+
+    private transient final UserRepository userRepository;
+    private transient final ComunaRepository comunaRepository;
+    private transient final ReferenceDataService referenceDataService;
+    private transient final int maxSize;
+    private transient final int batchSize;
+    private transient final ApplicationEventPublisher eventPublisher;
+    private transient final UserJournal journal;
+
+    @Autowired
+    public UserBatchService(UserRepository repository, ComunaRepository crepository, ReferenceDataService rdservice,
+                            ApplicationEventPublisher publisher, Optional<UserJournal> journal,
+                            @Value("${previred.batch.max-size:10000}") int maxSize,
+                            @Value("${previred.import.batch-size:500}") int batchSize){
+        userRepository = repository;
+        comunaRepository = crepository;
+        referenceDataService = rdservice;
+        this.maxSize = maxSize;
+        this.batchSize = batchSize;
+        eventPublisher = publisher;
+        this.journal = journal.orElse(null);
+    }
+
+    /*
+     * En modo write-behind se aplican primero las escrituras individuales ya registradas, para respetar el orden,
+     * y no se registran otras hasta que termine la transaccion: se validarian contra filas que esta operacion cambia
+     */
+    private void esperarEscrituras(){
+        if(journal != null){
+            journal.bloquearRegistroEnTransaccion();
+        }
+    }
+
+    private void validarTamano(List<?> lista){
+        if(lista == null || lista.isEmpty()){
+            throw new IllegalArgumentException("Debe ingresar al menos un usuario");
+        }
+        if(lista.size() > maxSize){
+            throw new IllegalArgumentException(
+                String.format("No se pueden procesar mas de %d usuarios por peticion", maxSize));
+        }
+    }
+
+    private static OperationResultDto rechazado(int indice, String rut, String mensaje){
+        return OperationResultDto.builder()
+                                 .indice(indice)
+                                 .rut(rut)
+                                 .estado(EstadoOperacion.RECHAZADO)
+                                 .mensaje(mensaje)
+                                 .build();
+    }
+
+    private static BatchResultDto resumen(List<OperationResultDto> resultados){
+        int exitosos = (int) resultados.stream().filter(r -> r.getEstado() != EstadoOperacion.RECHAZADO).count();
+        return BatchResultDto.builder()
+                             .procesados(resultados.size())
+                             .exitosos(exitosos)
+                             .rechazados(resultados.size() - exitosos)
+                             .resultados(resultados)
+                             .build();
+    }
+
+    /**
+     * @param ruts Los RUT de los usuarios a eliminar
+     * @return El resultado de cada RUT, en el mismo orden en que venian
+     */
+    @Transactional
+    public BatchResultDto delete(List<String> ruts){
+        validarTamano(ruts);
+        esperarEscrituras();
+        List<OperationResultDto> resultados = new ArrayList<>(ruts.size());
+        Map<String, OperationResultDto> validos = new LinkedHashMap<>();
+        for(int i = 0; i < ruts.size(); i++){
+            String rut = ruts.get(i);
+            long valor = rut == null ? RutCodec.SIN_DIGITOS : RutCodec.parse(rut.trim());
+            if(!RutCodec.isValid(valor)){
+                resultados.add(rechazado(i, rut, RUT_INVALIDO));
+                continue;
+            }
+            String normalizado = RutCodec.toString(valor);
+            if(validos.containsKey(normalizado)){
+                resultados.add(rechazado(i, normalizado, REPETIDO));
+                continue;
+            }
+            OperationResultDto resultado = OperationResultDto.builder().indice(i).rut(normalizado).build();
+            validos.put(normalizado, resultado);
+            resultados.add(resultado);
+        }
+        Map<String, User> existentes = userRepository.lockExisting(validos.keySet());
+        if(userRepository.bulkDelete(existentes.keySet()) > 0){
+            eventPublisher.publishEvent(new UsersChangedEvent(List.of(), List.copyOf(existentes.values())));
+        }
+        validos.forEach((rut, resultado) -> {
+            if(existentes.containsKey(rut)){
+                resultado.setEstado(EstadoOperacion.ELIMINADO);
+            }else{
+                resultado.setEstado(EstadoOperacion.RECHAZADO);
+                resultado.setMensaje(Util.throwUnexistingUserException().getMessage());
+            }
+        });
+        return resumen(resultados);
+    }
+
+    /**
+     * @param cambios Por cada usuario, el rut y los campos a modificar (los nulos no se modifican)
+     * @return El resultado de cada usuario, en el mismo orden en que venian
+     */
+    @Transactional
+    public BatchResultDto update(List<UserDto> cambios){
+        validarTamano(cambios);
+        esperarEscrituras();
+        ReferenceSnapshot referencia = referenceDataService.snapshot();
+        List<OperationResultDto> resultados = new ArrayList<>(cambios.size());
+        List<OperationResultDto> pendientes = new ArrayList<>();
+        List<User> usuarios = new ArrayList<>();
+        Set<String> vistos = new HashSet<>();
+        for(int i = 0; i < cambios.size(); i++){
+            UserDto dto = cambios.get(i);
+            String rutOriginal = dto == null ? null : dto.getRut();
+            long valor = rutOriginal == null ? RutCodec.SIN_DIGITOS : RutCodec.parse(rutOriginal.trim());
+            if(!RutCodec.isValid(valor)){
+                resultados.add(rechazado(i, rutOriginal, RUT_INVALIDO));
+                continue;
+            }
+            String rut = RutCodec.toString(valor);
+            String error = validarCambios(dto, referencia);
+            if(error == null && !vistos.add(rut)){
+                error = REPETIDO;
+            }
+            User user = null;
+            if(error == null){
+                try{
+                    user = cambios(rut, dto);
+                }catch(DateTimeException e){
+                    error = "Formato de fecha distinto de yyyy-MM-dd";
+                }
+            }
+            if(error != null){
+                resultados.add(rechazado(i, rut, error));
+                continue;
+            }
+            OperationResultDto resultado = OperationResultDto.builder().indice(i).rut(rut).build();
+            resultados.add(resultado);
+            pendientes.add(resultado);
+            usuarios.add(user);
+        }
+        /*Se leen antes los valores que se reemplazan, para restarlos de lo que se mantiene en memoria*/
+        Map<String, User> existentes = usuarios.isEmpty() ? Map.of() :
+            userRepository.lockExisting(usuarios.stream().map(User::getRut).toList());
+        boolean[] actualizados = usuarios.isEmpty() ? new boolean[0] : userRepository.bulkUpdate(usuarios, batchSize);
+        List<User> escritos = new ArrayList<>();
+        List<User> anteriores = new ArrayList<>();
+        for(int i = 0; i < pendientes.size(); i++){
+            User anterior = existentes.get(usuarios.get(i).getRut());
+            if(actualizados[i] && anterior != null){
+                pendientes.get(i).setEstado(EstadoOperacion.ACTUALIZADO);
+                escritos.add(combinar(anterior, usuarios.get(i)));
+                anteriores.add(anterior);
+            }else{
+                pendientes.get(i).setEstado(EstadoOperacion.RECHAZADO);
+                pendientes.get(i).setMensaje(Util.throwUnexistingUserException().getMessage());
+            }
+        }
+        if(!escritos.isEmpty()){
+            eventPublisher.publishEvent(new UsersChangedEvent(escritos, anteriores));
+        }
+        return resumen(resultados);
+    }
+
+    private static String recortar(String valor){
+        return valor == null ? null : valor.trim();
+    }
+
+    /**
+     * @return El usuario con solo los campos a modificar (el resto queda nulo)
+     * @throws DateTimeException Si la fecha no tiene formato yyyy-MM-dd
+     */
+    private static User cambios(String rut, UserDto dto){
+        return User.builder()
+                   .rut(rut)
+                   .nombre(recortar(dto.getNombre()))
+                   .apellido(recortar(dto.getApellido()))
+                   .calle(recortar(dto.getCalle()))
+                   .fechaNacimiento(dto.getFechaNacimiento() == null ? null :
+                                    Util.parseFechaNacimiento(dto.getFechaNacimiento()))
+                   .comuna(dto.getComuna() == null ? null : Comuna.builder().id(dto.getComuna()).build())
+                   .build();
+    }
+
+    /*Los campos son opcionales, pero si vienen no pueden estar vacios ni superar el largo de la columna*/
+    private static String validarCambios(UserDto dto, ReferenceSnapshot referencia){
+        if(dto.getNombre() == null && dto.getApellido() == null && dto.getCalle() == null &&
+           dto.getFechaNacimiento() == null && dto.getComuna() == null){
+            return "Debe indicar al menos un campo a modificar";
+        }
+        if(vacio(dto.getNombre()) || vacio(dto.getApellido()) || vacio(dto.getCalle()) || vacio(dto.getFechaNacimiento())){
+            return "Los campos a modificar no pueden estar vacios";
+        }
+        if(largo(dto.getNombre()) > 20 || largo(dto.getApellido()) > 20 || largo(dto.getCalle()) > 50){
+            return "El nombre y el apellido no pueden superar los 20 caracteres, ni la calle los 50";
+        }
+        if(dto.getComuna() != null && !referencia.existeComuna(dto.getComuna())){
+            return Util.throwUnexistingCommunaException().getMessage();
+        }
+        return null;
+    }
+
+    private static boolean vacio(String valor){
+        return valor != null && valor.isBlank();
+    }
+
+    private static int largo(String valor){
+        return valor == null ? 0 : valor.trim().length();
+    }
+
+    /*Como queda un usuario despues de simular, en orden, las acciones de la cola que lo afectan*/
+    private static final class EstadoSync {
+        private final boolean existia;
+        private boolean existe;
+        /*Lo que hay que escribir. Si el usuario ya existia, los campos nulos no se modifican*/
+        private User valores;
+
+        private EstadoSync(boolean existia){
+            this.existia = existia;
+            this.existe = existia;
+        }
+    }
+
+    private static TipoMutacion tipoAccion(String type){
+        return switch(type == null ? "" : type.trim().toLowerCase(Locale.ROOT)){
+            case "create" -> TipoMutacion.GUARDAR;
+            case "update" -> TipoMutacion.ACTUALIZAR;
+            case "delete" -> TipoMutacion.ELIMINAR;
+            default -> null;
+        };
+    }
+
+    private static User combinar(User base, User cambios){
+        if(base == null){
+            return cambios;
+        }
+        return User.builder()
+                   .rut(base.getRut())
+                   .nombre(cambios.getNombre() != null ? cambios.getNombre() : base.getNombre())
+                   .apellido(cambios.getApellido() != null ? cambios.getApellido() : base.getApellido())
+                   .calle(cambios.getCalle() != null ? cambios.getCalle() : base.getCalle())
+                   .fechaNacimiento(cambios.getFechaNacimiento() != null ? cambios.getFechaNacimiento() : base.getFechaNacimiento())
+                   .comuna(cambios.getComuna() != null ? cambios.getComuna() : base.getComuna())
+                   .build();
+    }
+
+    /**
+     * Aplica la cola de acciones pendientes del frontend. Las acciones se ordenan por fecha y se simulan en memoria
+     * por rut, con el mismo resultado que tendrian enviadas una por una. Luego se escribe solo el estado final de
+     * cada usuario: una sola sentencia por rut, o ninguna (por ejemplo, si se crea, modifica y elimina un usuario nuevo).
+     *
+     * @param acciones La cola, con acciones create (usuario completo), update (rut en id y campos a modificar) y delete
+     * @return El resultado de cada accion, en el mismo orden en que venian
+     */
+    @Transactional
+    public BatchResultDto sync(List<SyncActionDto> acciones){
+        validarTamano(acciones);
+        esperarEscrituras();
+        ReferenceSnapshot referencia = referenceDataService.snapshot();
+        OperationResultDto[] resultados = new OperationResultDto[acciones.size()];
+        TipoMutacion[] tipos = new TipoMutacion[acciones.size()];
+        List<Integer> orden = new ArrayList<>(acciones.size());
+        for(int i = 0; i < acciones.size(); i++){
+            SyncActionDto accion = acciones.get(i);
+            tipos[i] = accion == null ? null : tipoAccion(accion.getType());
+            String rut = tipos[i] == TipoMutacion.GUARDAR ?
+                Optional.ofNullable(accion.getPayload()).map(UserDto::getRut).orElse(null) :
+                accion == null ? null : accion.getId();
+            long valor = rut == null ? RutCodec.SIN_DIGITOS : RutCodec.parse(rut.trim());
+            if(tipos[i] == null){
+                resultados[i] = rechazado(i, rut, "Tipo de accion no reconocido: " + (accion == null ? null : accion.getType()));
+            }else if(accion.getTimestamp() == null){
+                resultados[i] = rechazado(i, rut, "La accion no indica su fecha");
+            }else if(!RutCodec.isValid(valor)){
+                resultados[i] = rechazado(i, rut, RUT_INVALIDO);
+            }else{
+                resultados[i] = OperationResultDto.builder().indice(i).rut(RutCodec.toString(valor)).build();
+                orden.add(i);
+            }
+        }
+        /*sort es estable: las acciones con la misma fecha quedan en el orden en que venian*/
+        orden.sort(Comparator.comparingLong(i -> acciones.get(i).getTimestamp()));
+        Map<String, User> existentes = userRepository.lockExisting(orden.stream().map(i -> resultados[i].getRut()).distinct().toList());
+        Map<String, EstadoSync> estados = new LinkedHashMap<>();
+        for(int i : orden){
+            OperationResultDto resultado = resultados[i];
+            EstadoSync estado = estados.computeIfAbsent(resultado.getRut(), r -> new EstadoSync(existentes.containsKey(r)));
+            simular(tipos[i], acciones.get(i).getPayload(), estado, resultado, referencia);
+        }
+        List<User> nuevos = new ArrayList<>();
+        List<User> modificados = new ArrayList<>();
+        List<String> eliminados = new ArrayList<>();
+        List<User> escritos = new ArrayList<>();
+        List<User> anteriores = new ArrayList<>();
+        estados.forEach((rut, estado) -> {
+            if(estado.existia && !estado.existe){
+                eliminados.add(rut);
+                anteriores.add(existentes.get(rut));
+            }else if(!estado.existia && estado.existe){
+                nuevos.add(estado.valores);
+                escritos.add(estado.valores);
+            }else if(estado.existe && estado.valores != null){
+                modificados.add(estado.valores);
+                escritos.add(combinar(existentes.get(rut), estado.valores));
+                anteriores.add(existentes.get(rut));
+            }
+        });
+        userRepository.bulkDelete(eliminados);
+        if(!nuevos.isEmpty()){
+            userRepository.insertAll(nuevos, batchSize);
+        }
+        if(!modificados.isEmpty()){
+            userRepository.bulkUpdate(modificados, batchSize);
+        }
+        if(!escritos.isEmpty() || !anteriores.isEmpty()){
+            eventPublisher.publishEvent(new UsersChangedEvent(escritos, anteriores));
+        }
+        return resumen(Arrays.asList(resultados));
+    }
+
+    private static void simular(TipoMutacion tipo, UserDto payload, EstadoSync estado, OperationResultDto resultado,
+                                ReferenceSnapshot referencia){
+        switch(tipo){
+            case GUARDAR -> {
+                if(estado.existe){
+                    marcarRechazado(resultado, "El usuario ya existe");
+                    return;
+                }
+                User user = UserImportService.preparar(payload, referencia, resultado);
+                if(user != null){
+                    estado.existe = true;
+                    estado.valores = user;
+                    resultado.setEstado(EstadoOperacion.CREADO);
+                }
+            }
+            case ACTUALIZAR -> {
+                if(!estado.existe){
+                    marcarRechazado(resultado, Util.throwUnexistingUserException().getMessage());
+                    return;
+                }
+                String error = payload == null ? "Debe indicar al menos un campo a modificar" : validarCambios(payload, referencia);
+                if(error != null){
+                    marcarRechazado(resultado, error);
+                    return;
+                }
+                try{
+                    estado.valores = combinar(estado.valores, cambios(resultado.getRut(), payload));
+                    resultado.setEstado(EstadoOperacion.ACTUALIZADO);
+                }catch(DateTimeException e){
+                    marcarRechazado(resultado, "Formato de fecha distinto de yyyy-MM-dd");
+                }
+            }
+            case ELIMINAR -> {
+                if(!estado.existe){
+                    marcarRechazado(resultado, Util.throwUnexistingUserException().getMessage());
+                    return;
+                }
+                estado.existe = false;
+                estado.valores = null;
+                resultado.setEstado(EstadoOperacion.ELIMINADO);
+            }
+        }
+    }
+
+    private static void marcarRechazado(OperationResultDto resultado, String mensaje){
+        resultado.setEstado(EstadoOperacion.RECHAZADO);
+        resultado.setMensaje(mensaje);
+    }
+
+    /**
+     * Mueve todos los usuarios de una comuna a otra con un solo UPDATE
+     *
+     * @return Cantidad de usuarios movidos
+     */
+    @Transactional
+    public int moveComuna(Integer origen, Integer destino){
+        ReferenceSnapshot referencia = referenceDataService.snapshot();
+        if(!referencia.existeComuna(origen) || !referencia.existeComuna(destino)){
+            throw Util.throwUnexistingCommunaException();
+        }
+        if(origen.equals(destino)){
+            throw new IllegalArgumentException("La comuna de origen y la de destino son la misma");
+        }
+        esperarEscrituras();
+        /*Si la region de alguna se esta eliminando, se espera a que termine y se revisa de nuevo*/
+        if(comunaRepository.lockExisting(List.of(origen, destino)).size() < 2){
+            throw Util.throwUnexistingCommunaException();
+        }
+        int movidos = userRepository.moveComuna(comunaRepository.getReferenceById(origen),
+                                                comunaRepository.getReferenceById(destino));
+        if(movidos > 0){
+            eventPublisher.publishEvent(UsersChangedEvent.desconocidos());
+        }
+        return movidos;
+    }
+}
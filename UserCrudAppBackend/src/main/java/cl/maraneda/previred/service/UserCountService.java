@@ -0,0 +1,221 @@
+package cl.maraneda.previred.service;
+
+import cl.maraneda.previred.dto.ComunaDto;
+import cl.maraneda.previred.dto.ConteoDto;
+import cl.maraneda.previred.dto.RegionDto;
+import cl.maraneda.previred.journal.UserJournalReplayedEvent;
+import cl.maraneda.previred.model.User;
+import cl.maraneda.previred.util.ReconstruccionDiferida;
+import cl.maraneda.previred.util.ReferenceSnapshot;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Cantidad de usuarios por region y por comuna, desde una tabla de contadores en memoria: por cada comuna,
+ * la cantidad de usuarios nacidos en cada fecha. Se arma al iniciar con un solo GROUP BY y, apenas se confirma
+ * la transaccion que cambio usuarios, se restan los valores que tenian antes y se suman los nuevos. Igual que en
+ * el autocompletado, solo las sentencias por comuna o por region obligan a volver a contar unos segundos despues.
+ * <p>
+ * La edad es la cumplida a la fecha: cada tramo empieza en una fecha de nacimiento de corte (hoy menos la edad).
+ */
+@Service
+public class UserCountService {
+    private static final String CONTAR =
+        "SELECT comuna, fecha_nacimiento, COUNT(*) FROM usuario GROUP BY comuna, fecha_nacimiento";
+
+    /*Los usuarios de una comuna por fecha de nacimiento (en dias desde 1970), mas el total para no recorrerlas*/
+    private static final class Contadores {
+        private final AtomicLong total = new AtomicLong();
+        private final ConcurrentSkipListMap<Long, AtomicLong> porFecha = new ConcurrentSkipListMap<>();
+
+        private void sumar(LocalDate fecha, long usuarios){
+            total.addAndGet(usuarios);
+            porFecha.computeIfAbsent(fecha.toEpochDay(), k -> new AtomicLong()).addAndGet(usuarios);
+        }
+    }
+
+    private transient final JdbcTemplate jdbcTemplate;
+    private transient final ReferenceDataService referenceDataService;
+    private transient final AtomicReference<Map<Integer, Contadores>> conteos = new AtomicReference<>(new ConcurrentHashMap<>());
+    private transient final ReconstruccionDiferida reconstruccion;
+
+    @Autowired
+    public UserCountService(JdbcTemplate template, ReferenceDataService rdservice,
+                            @Value("${previred.count.rebuild-delay-ms:5000}") long retrasoMs){
+        jdbcTemplate = template;
+        referenceDataService = rdservice;
+        reconstruccion = new ReconstruccionDiferida("conteo-usuarios", retrasoMs, this::armar);
+    }
+
+    /*Se arma al crear el servicio: con la inicializacion diferida de application.yml, en la primera peticion que lo usa*/
+    @PostConstruct
+    public void rebuild(){
+        reconstruccion.ahora();
+    }
+
+    private void armar(){
+        Map<Integer, Contadores> nuevos = new ConcurrentHashMap<>();
+        jdbcTemplate.query(CONTAR, rs -> {
+            int comuna = rs.getInt(1);
+            boolean sinComuna = rs.wasNull();
+            LocalDate fecha = rs.getObject(2, LocalDate.class);
+            if(!sinComuna && fecha != null){
+                nuevos.computeIfAbsent(comuna, k -> new Contadores()).sumar(fecha, rs.getLong(3));
+            }
+        });
+        conteos.set(nuevos);
+    }
+
+    @PreDestroy
+    public void shutdown(){
+        reconstruccion.close();
+    }
+
+    /*En modo write-behind, el diario se reaplica al iniciar directo en la base de datos*/
+    @EventListener
+    public void onJournalReplayed(UserJournalReplayedEvent event){
+        reconstruccion.ahora();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUsersChanged(UsersChangedEvent event){
+        /*Si hubo cambios por comuna o por region no se puede sumar: no se sabe a quienes afectaron*/
+        if(event.requiereReconstruccion()){
+            reconstruccion.programar();
+            return;
+        }
+        Map<Integer, Contadores> actuales = conteos.get();
+        event.anteriores().forEach(u -> ajustar(actuales, u, -1));
+        event.usuarios().forEach(u -> ajustar(actuales, u, 1));
+    }
+
+    private void ajustar(Map<Integer, Contadores> actuales, User u, long usuarios){
+        if(u.getComuna() != null && u.getFechaNacimiento() != null){
+            reconstruccion.registrarAgregado();
+            actuales.computeIfAbsent(u.getComuna().getId(), k -> new Contadores()).sumar(u.getFechaNacimiento(), usuarios);
+        }
+    }
+
+    /**
+     * @param tramos Edades donde empieza cada tramo, separadas por coma y en orden creciente (por ejemplo "18,30,60")
+     * @return Las edades, o null si no se pidieron tramos
+     * @throws IllegalArgumentException Si los tramos no son enteros positivos crecientes
+     */
+    public static int[] parseTramos(String tramos){
+        if(tramos == null || tramos.isBlank()){
+            return null;
+        }
+        try{
+            String[] partes = tramos.split(",");
+            int[] edades = new int[partes.length];
+            for(int i = 0; i < partes.length; i++){
+                edades[i] = Integer.parseInt(partes[i].trim());
+                if(edades[i] <= 0 || (i > 0 && edades[i] <= edades[i - 1])){
+                    throw new NumberFormatException();
+                }
+            }
+            return edades;
+        }catch(NumberFormatException e){
+            throw new IllegalArgumentException("Tramos de edad invalidos: " + tramos);
+        }
+    }
+
+    /*
+     * Suma los contadores de las comunas en el acumulador: total en la posicion 0 y cada tramo de edad despues.
+     * Quien nacio en la fecha de corte de un tramo o antes ya cumplio esa edad; las fechas se recorren de la mas
+     * reciente a la mas antigua, asi el tramo solo avanza.
+     */
+    private void sumar(List<Integer> comunas, int[] tramos, long[] acumulado){
+        Map<Integer, Contadores> actuales = conteos.get();
+        long[] cortes = null;
+        if(tramos != null){
+            LocalDate hoy = LocalDate.now();
+            cortes = new long[tramos.length];
+            for(int i = 0; i < tramos.length; i++){
+                cortes[i] = hoy.minusYears(tramos[i]).toEpochDay();
+            }
+        }
+        for(Integer comuna : comunas){
+            Contadores contadores = actuales.get(comuna);
+            if(contadores == null){
+                continue;
+            }
+            acumulado[0] += contadores.total.get();
+            if(cortes == null){
+                continue;
+            }
+            int tramo = 0;
+            for(Map.Entry<Long, AtomicLong> e : contadores.porFecha.descendingMap().entrySet()){
+                while(tramo < cortes.length && e.getKey() <= cortes[tramo]){
+                    tramo++;
+                }
+                acumulado[tramo + 1] += e.getValue().get();
+            }
+        }
+    }
+
+    private <T> ConteoDto<T> conteo(T id, String nombre, List<Integer> comunas, int[] tramos){
+        long[] acumulado = new long[tramos == null ? 1 : tramos.length + 2];
+        sumar(comunas, tramos, acumulado);
+        Map<String, Long> porEdad = null;
+        if(tramos != null){
+            porEdad = new LinkedHashMap<>();
+            int desde = 0;
+            for(int i = 0; i < tramos.length; i++){
+                porEdad.put(desde + "-" + (tramos[i] - 1), acumulado[i + 1]);
+                desde = tramos[i];
+            }
+            porEdad.put(desde + "+", acumulado[tramos.length + 1]);
+        }
+        return ConteoDto.<T>builder().id(id).nombre(nombre).usuarios(acumulado[0]).porEdad(porEdad).build();
+    }
+
+    /**
+     * @param tramos Ver {@link #parseTramos(String)}; null para no separar por edad
+     * @return La cantidad de usuarios de cada region, en el orden geografico de las regiones
+     */
+    public List<ConteoDto<String>> porRegion(int[] tramos){
+        ReferenceSnapshot referencia = referenceDataService.snapshot();
+        List<ConteoDto<String>> resultado = new ArrayList<>(referencia.regiones().size());
+        for(RegionDto region : referencia.regiones()){
+            List<Integer> comunas = referencia.comunas(region.getId()).stream().map(ComunaDto::getId).toList();
+            resultado.add(conteo(region.getId(), region.getNombre(), comunas, tramos));
+        }
+        return resultado;
+    }
+
+    /**
+     * @param regionId Si no es null, solo las comunas de esa region
+     * @param tramos Ver {@link #parseTramos(String)}; null para no separar por edad
+     * @return La cantidad de usuarios de cada comuna, agrupadas por region y ordenadas por nombre
+     */
+    public List<ConteoDto<Integer>> porComuna(String regionId, int[] tramos){
+        ReferenceSnapshot referencia = referenceDataService.snapshot();
+        List<ConteoDto<Integer>> resultado = new ArrayList<>();
+        for(RegionDto region : referencia.regiones()){
+            if(regionId != null && !regionId.equals(region.getId())){
+                continue;
+            }
+            for(ComunaDto comuna : referencia.comunas(region.getId())){
+                resultado.add(conteo(comuna.getId(), comuna.getNombre(), List.of(comuna.getId()), tramos));
+            }
+        }
+        return resultado;
+    }
+}
@@ -0,0 +1,248 @@
+package cl.maraneda.previred.service;
+
+import cl.maraneda.previred.dto.ImportResultDto;
+import cl.maraneda.previred.dto.OperationResultDto;
+import cl.maraneda.previred.dto.UserDto;
+import cl.maraneda.previred.journal.UserJournal;
+import cl.maraneda.previred.model.Comuna;
+import cl.maraneda.previred.model.User;
+import cl.maraneda.previred.repository.UserRepository;
+import cl.maraneda.previred.util.EstadoOperacion;
+import cl.maraneda.previred.util.ReferenceSnapshot;
+import cl.maraneda.previred.util.RutCodec;
+import cl.maraneda.previred.util.Util;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.DateTimeException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Carga masiva de usuarios. El arreglo JSON se lee elemento por elemento, cada usuario se valida contra
+ * la foto en memoria de las comunas y los usuarios validos se insertan por JDBC en lotes, confirmando
+ * una transaccion por cada bloque de usuarios.
+ */
+@Service
+public class UserImportService {
+    private static final String RUT_INVALIDO = "Formato de rut invalido o Rut no concuerda con digito verificador";
+
+    private transient final UserRepository userRepository;
+    private transient final ReferenceDataService referenceDataService;
+    private transient final TransactionTemplate transactionTemplate;
+    private transient final ObjectMapper objectMapper;
+    private transient final int chunkSize;
+    private transient final int batchSize;
+    private transient final ApplicationEventPublisher eventPublisher;
+    private transient final UserJournal journal;
+
+    @Autowired
+    public UserImportService(UserRepository repository, ReferenceDataService rdservice,
+                             TransactionTemplate template, ObjectMapper mapper, ApplicationEventPublisher publisher,
+                             Optional<UserJournal> journal,
+                             @Value("${previred.import.chunk-size:5000}") int chunkSize,
+                             @Value("${previred.import.batch-size:500}") int batchSize){
+        userRepository = repository;
+        referenceDataService = rdservice;
+        transactionTemplate = template;
+        objectMapper = mapper;
+        this.chunkSize = chunkSize;
+        this.batchSize = batchSize;
+        eventPublisher = publisher;
+        this.journal = journal.orElse(null);
+    }
+
+
+    private record Pendiente(OperationResultDto resultado, User user) {
+    }
+
+    /**
+     * Si el JSON viene mal formado a mitad de camino, se guardan los usuarios leidos hasta ese punto y el
+     * resultado indica el error y la linea y columna donde se produjo
+     *
+     * @param json Un arreglo JSON de usuarios
+     * @return El resultado de cada usuario leido, en el mismo orden en que venian
+     * @throws IOException Si el cuerpo no se puede leer o no empieza como un JSON valido
+     * @throws IllegalArgumentException Si el cuerpo no es un arreglo JSON
+     */
+    public ImportResultDto importUsers(InputStream json) throws IOException {
+        ReferenceSnapshot referencia = referenceDataService.snapshot();
+        Set<String> vistos = new HashSet<>();
+        List<OperationResultDto> resultados = new ArrayList<>();
+        List<Pendiente> pendientes = new ArrayList<>(chunkSize);
+        String error = null;
+        JsonLocation posicion = null;
+        try(JsonParser parser = objectMapper.createParser(json)){
+            if(parser.nextToken() != JsonToken.START_ARRAY){
+                throw new IllegalArgumentException("Se esperaba un arreglo JSON de usuarios");
+            }
+            try{
+                JsonToken token;
+                while((token = parser.nextToken()) == JsonToken.START_OBJECT){
+                    UserDto dto = objectMapper.readValue(parser, UserDto.class);
+                    OperationResultDto resultado = OperationResultDto.builder()
+                                                                     .indice(resultados.size())
+                                                                     .rut(dto.getRut())
+                                                                     .build();
+                    resultados.add(resultado);
+                    User user = preparar(dto, referencia, resultado);
+                    if(user == null){
+                        continue;
+                    }
+                    if(!vistos.add(user.getRut())){
+                        rechazar(resultado, "El usuario viene repetido en la carga");
+                        continue;
+                    }
+                    pendientes.add(new Pendiente(resultado, user));
+                    if(pendientes.size() >= chunkSize){
+                        guardar(pendientes);
+                        pendientes.clear();
+                    }
+                }
+                if(token != JsonToken.END_ARRAY){
+                    error = String.format("El elemento %d no es un usuario", resultados.size());
+                    posicion = parser.currentTokenLocation();
+                }
+            }catch(JsonProcessingException e){
+                /*Lo que ya se leyo se guarda igual: los bloques anteriores ya estan confirmados*/
+                error = String.format("JSON mal formado en el elemento %d", resultados.size());
+                posicion = e.getLocation();
+            }
+        }
+        guardar(pendientes);
+        int creados = (int) resultados.stream().filter(r -> r.getEstado() == EstadoOperacion.CREADO).count();
+        return ImportResultDto.builder()
+                              .procesados(resultados.size())
+                              .creados(creados)
+                              .rechazados(resultados.size() - creados)
+                              .resultados(resultados)
+                              .error(error)
+                              .lineaError(posicion == null ? null : posicion.getLineNr())
+                              .columnaError(posicion == null ? null : posicion.getColumnNr())
+                              .build();
+    }
+
+    /*Valida el usuario sin ir a la base de datos. Devuelve null (y marca el resultado) si se rechaza*/
+    static User preparar(UserDto dto, ReferenceSnapshot referencia, OperationResultDto resultado){
+        if(dto.getNombre()==null || dto.getNombre().isBlank() ||
+           dto.getApellido()==null || dto.getApellido().isBlank() ||
+           dto.getRut()==null || dto.getRut().isBlank() ||
+           dto.getCalle()==null || dto.getCalle().isBlank() ||
+           dto.getFechaNacimiento()==null || dto.getFechaNacimiento().isBlank() ||
+           dto.getComuna()==null || dto.getComuna().equals(0)){
+            return rechazar(resultado, "Todos los campos son obligatorios");
+        }
+        long rut = RutCodec.parse(dto.getRut().trim());
+        if(!RutCodec.isValid(rut)){
+            return rechazar(resultado, RUT_INVALIDO);
+        }
+        String nombre = dto.getNombre().trim();
+        String apellido = dto.getApellido().trim();
+        String calle = dto.getCalle().trim();
+        if(nombre.length() > 20 || apellido.length() > 20 || calle.length() > 50){
+            return rechazar(resultado, "El nombre y el apellido no pueden superar los 20 caracteres, ni la calle los 50");
+        }
+        if(!referencia.existeComuna(dto.getComuna())){
+            return rechazar(resultado, Util.throwUnexistingCommunaException().getMessage());
+        }
+        try{
+            User user = User.builder()
+                            .rut(RutCodec.toString(rut))
+                            .nombre(nombre)
+                            .apellido(apellido)
+                            .fechaNacimiento(Util.parseFechaNacimiento(dto.getFechaNacimiento()))
+                            .calle(calle)
+                            .comuna(Comuna.builder().id(dto.getComuna()).build())
+                            .build();
+            resultado.setRut(user.getRut());
+            return user;
+        }catch(DateTimeException e){
+            return rechazar(resultado, "Formato de fecha distinto de yyyy-MM-dd");
+        }
+    }
+
+    private static User rechazar(OperationResultDto resultado, String mensaje){
+        resultado.setEstado(EstadoOperacion.RECHAZADO);
+        resultado.setMensaje(mensaje);
+        return null;
+    }
+
+    private void guardar(List<Pendiente> pendientes){
+        if(pendientes.isEmpty()){
+            return;
+        }
+        try{
+            transactionTemplate.executeWithoutResult(status -> {
+                bloquearRegistro();
+                Set<String> existentes =
+                    userRepository.findExistingRuts(pendientes.stream().map(p -> p.user().getRut()).toList());
+                List<User> nuevos = new ArrayList<>(pendientes.size());
+                for(Pendiente p : pendientes){
+                    if(existentes.contains(p.user().getRut())){
+                        rechazar(p.resultado(), "El usuario ya existe");
+                    }else{
+                        nuevos.add(p.user());
+                    }
+                }
+                userRepository.insertAll(nuevos, batchSize);
+                publicarNuevos(nuevos);
+            });
+        }catch(DataAccessException e){
+            /*Alguien inserto uno de los RUT entre la consulta y el lote: se reintenta fila por fila*/
+            pendientes.forEach(this::guardarUno);
+            return;
+        }
+        pendientes.stream()
+                  .filter(p -> p.resultado().getEstado() == null)
+                  .forEach(p -> p.resultado().setEstado(EstadoOperacion.CREADO));
+    }
+
+    /*
+     * En modo write-behind, cada bloque aplica primero las escrituras individuales ya registradas y no deja registrar
+     * otras hasta que su transaccion termina. El cuerpo se lee sin el bloqueo: una carga lenta no detiene a nadie
+     */
+    private void bloquearRegistro(){
+        if(journal != null){
+            journal.bloquearRegistroEnTransaccion();
+        }
+    }
+
+    /*Dentro de la transaccion: lo que se mantiene en memoria solo se entera si el bloque se confirma*/
+    private void publicarNuevos(List<User> nuevos){
+        if(!nuevos.isEmpty()){
+            eventPublisher.publishEvent(UsersChangedEvent.creados(List.copyOf(nuevos)));
+        }
+    }
+
+    private void guardarUno(Pendiente p){
+        try{
+            transactionTemplate.executeWithoutResult(status -> {
+                bloquearRegistro();
+                userRepository.insertAll(List.of(p.user()), 1);
+                publicarNuevos(List.of(p.user()));
+            });
+            p.resultado().setEstado(EstadoOperacion.CREADO);
+            p.resultado().setMensaje(null);
+        }catch(DataIntegrityViolationException e){
+            rechazar(p.resultado(), "El usuario ya existe");
+        }catch(DataAccessException e){
+            /*Una fila que falla por otra razon no debe cortar el resto del bloque*/
+            rechazar(p.resultado(), "No se pudo guardar el usuario");
+        }
+    }
+}
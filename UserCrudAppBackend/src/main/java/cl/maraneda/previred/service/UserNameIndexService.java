@@ -0,0 +1,100 @@
+package cl.maraneda.previred.service;
+
+import cl.maraneda.previred.journal.UserJournalReplayedEvent;
+import cl.maraneda.previred.model.User;
+import cl.maraneda.previred.util.PrefixIndex;
+import cl.maraneda.previred.util.ReconstruccionDiferida;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Autocompletado de nombres y apellidos desde un indice de prefijos en memoria, armado al iniciar.
+ * Apenas se confirma la transaccion que cambio usuarios, se quitan los nombres que tenian antes y se agregan los
+ * nuevos. Solo las sentencias por comuna o por region no saben que nombres habia, asi que en ese caso el indice
+ * se vuelve a contar desde la base de datos unos segundos despues, agrupando todos los cambios de ese lapso.
+ */
+@Service
+public class UserNameIndexService {
+    private static final String CONTAR_NOMBRES = "SELECT nombre, COUNT(*) FROM usuario GROUP BY nombre";
+    private static final String CONTAR_APELLIDOS = "SELECT apellido, COUNT(*) FROM usuario GROUP BY apellido";
+
+    private record Indices(PrefixIndex nombres, PrefixIndex apellidos) {
+    }
+
+    private transient final JdbcTemplate jdbcTemplate;
+    private transient final AtomicReference<Indices> indices = new AtomicReference<>(new Indices(new PrefixIndex(), new PrefixIndex()));
+    private transient final ReconstruccionDiferida reconstruccion;
+
+    @Autowired
+    public UserNameIndexService(JdbcTemplate template, @Value("${previred.autocomplete.rebuild-delay-ms:5000}") long retrasoMs){
+        jdbcTemplate = template;
+        reconstruccion = new ReconstruccionDiferida("indice-nombres", retrasoMs, this::armar);
+    }
+
+    /*Se arma al crear el servicio: con la inicializacion diferida de application.yml, en la primera peticion que lo usa*/
+    @PostConstruct
+    public void rebuild(){
+        reconstruccion.ahora();
+    }
+
+    private void armar(){
+        PrefixIndex nombres = new PrefixIndex();
+        PrefixIndex apellidos = new PrefixIndex();
+        jdbcTemplate.query(CONTAR_NOMBRES, (RowCallbackHandler) rs -> nombres.agregar(rs.getString(1), rs.getLong(2)));
+        jdbcTemplate.query(CONTAR_APELLIDOS, (RowCallbackHandler) rs -> apellidos.agregar(rs.getString(1), rs.getLong(2)));
+        indices.set(new Indices(nombres, apellidos));
+    }
+
+    @PreDestroy
+    public void shutdown(){
+        reconstruccion.close();
+    }
+
+    /**
+     * @return Los "limite" nombres con mas usuarios que empiezan con el prefijo, de mas a menos usuarios
+     */
+    public List<String> nombres(String prefijo, int limite){
+        return indices.get().nombres().buscar(prefijo, limite);
+    }
+
+    /**
+     * @return Los "limite" apellidos con mas usuarios que empiezan con el prefijo, de mas a menos usuarios
+     */
+    public List<String> apellidos(String prefijo, int limite){
+        return indices.get().apellidos().buscar(prefijo, limite);
+    }
+
+    /*En modo write-behind, el diario se reaplica al iniciar directo en la base de datos*/
+    @EventListener
+    public void onJournalReplayed(UserJournalReplayedEvent event){
+        reconstruccion.ahora();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUsersChanged(UsersChangedEvent event){
+        Indices actuales = indices.get();
+        for(User u : event.anteriores()){
+            reconstruccion.registrarAgregado();
+            actuales.nombres().quitar(u.getNombre());
+            actuales.apellidos().quitar(u.getApellido());
+        }
+        for(User u : event.usuarios()){
+            reconstruccion.registrarAgregado();
+            actuales.nombres().agregar(u.getNombre());
+            actuales.apellidos().agregar(u.getApellido());
+        }
+        if(event.requiereReconstruccion()){
+            reconstruccion.programar();
+        }
+    }
+}
@@ -1,87 +1,213 @@
 package cl.maraneda.previred.service;
 
-import cl.maraneda.previred.dto.SearchDto;
+import cl.maraneda.previred.dto.SearchPageDto;
 import cl.maraneda.previred.dto.SearchResultDto;
 import cl.maraneda.previred.dto.UserDto;
+import cl.maraneda.previred.dto.UserSearchRow;
+import cl.maraneda.previred.journal.TipoMutacion;
+import cl.maraneda.previred.journal.UserJournal;
+import cl.maraneda.previred.metrics.SearchMetrics;
+import cl.maraneda.previred.model.Comuna;
 import cl.maraneda.previred.model.User;
 import cl.maraneda.previred.repository.ComunaRepository;
 import cl.maraneda.previred.repository.UserRepository;
-import cl.maraneda.previred.util.CriterioBusquedaUsuario;
+import cl.maraneda.previred.util.FiltroBusqueda;
+import cl.maraneda.previred.util.FormatoExportacion;
+import cl.maraneda.previred.util.UserExportWriter;
 import cl.maraneda.previred.util.Util;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.lang.reflect.InvocationTargetException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Service
 public class UserService {
     private transient final UserRepository userRepository;
     private transient final ComunaRepository comunaRepository;
+    private transient final TransactionTemplate transactionTemplate;
+    private transient final int defaultPageSize;
+    private transient final int maxPageSize;
+    private transient final ObjectMapper objectMapper;
+    private transient final int exportFetchSize;
+    private transient final SearchMetrics metrics;
+    private transient final ReferenceDataService referenceDataService;
+    private transient final ApplicationEventPublisher eventPublisher;
+    /*Solo existe en modo write-behind*/
+    private transient final UserJournal journal;
 
     @Autowired
-    public UserService(UserRepository repository, ComunaRepository crepository){
+    public UserService(UserRepository repository, ComunaRepository crepository, TransactionTemplate template,
+                       ObjectMapper mapper, SearchMetrics metrics,
+                       ReferenceDataService rdservice, ApplicationEventPublisher publisher, Optional<UserJournal> journal,
+                       @Value("${previred.search.default-page-size:100}") int defaultPageSize,
+                       @Value("${previred.search.max-page-size:1000}") int maxPageSize,
+                       @Value("${previred.export.fetch-size:1000}") int exportFetchSize){
         userRepository = repository;
         comunaRepository = crepository;
+        transactionTemplate = template;
+        objectMapper = mapper;
+        this.metrics = metrics;
+        referenceDataService = rdservice;
+        eventPublisher = publisher;
+        this.journal = journal.orElse(null);
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+        this.exportFetchSize = exportFetchSize;
     }
 
-    public List<SearchResultDto> findAll(){
-        return Util.mapToSearchDto(userRepository.findAll());
+    /**
+     * @return Si las escrituras se confirman al quedar en el diario, antes de llegar a la base de datos
+     */
+    public boolean isWriteBehind(){
+        return journal != null;
     }
-    public List<SearchResultDto> findByNombreAndApellido(String nombre, String apellido){
-        return Util.mapToSearchDto(userRepository.findByNombreAndApellido(nombre, apellido));
+
+    /*En modo write-behind, lo confirmado a los clientes debe estar en la base de datos antes de leerla*/
+    private void esperarEscrituras(){
+        if(journal != null){
+            journal.esperarAplicadas();
+        }
+    }
+
+    private int pageSize(Integer requested){
+        if(requested == null || requested <= 0){
+            return defaultPageSize;
+        }
+        return Math.min(requested, maxPageSize);
+    }
+
+    /*Se pide un registro adicional para saber si existe una pagina siguiente sin hacer un COUNT*/
+    public SearchPageDto search(FiltroBusqueda filtro, String cursor, Integer pageSize){
+        esperarEscrituras();
+        return metrics.servicio("search", () -> {
+            int size = pageSize(pageSize);
+            List<UserSearchRow> filas = userRepository.search(filtro, Util.decodeCursor(cursor), size + 1);
+            return metrics.mapeo(() -> Util.mapToSearchPage(filas, size));
+        });
+    }
+
+    /**
+     * Escribe todos los usuarios, ordenados por rut, a medida que se leen desde la base de datos.
+     * La memoria usada no depende de la cantidad de usuarios.
+     *
+     * @param formato El formato de salida
+     * @param out Donde se escriben los usuarios. No se cierra.
+     */
+    @Transactional(readOnly = true)
+    public void export(FormatoExportacion formato, OutputStream out) throws IOException {
+        esperarEscrituras();
+        try(Stream<UserSearchRow> filas = userRepository.stream(FiltroBusqueda.TODOS, exportFetchSize);
+            UserExportWriter writer = UserExportWriter.of(formato, out, objectMapper)){
+            for(Iterator<UserSearchRow> it = filas.iterator(); it.hasNext();){
+                writer.write(it.next());
+            }
+        }
     }
 
-    @SuppressWarnings("unchecked")
-    public List<SearchResultDto> findByCriterio(String valor, CriterioBusquedaUsuario criterio) throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
-        return Util.mapToSearchDto(
-            (List<User>) UserRepository.class
-                                       .getMethod("find" + criterio.getValue(), String.class)
-                                       .invoke(userRepository, valor));
+    /*La comuna se valida contra la foto en memoria, sin ir a la base de datos*/
+    private Integer comunaExistente(Integer comuna){
+        if(!referenceDataService.snapshot().existeComuna(comuna)){
+            throw Util.throwUnexistingCommunaException();
+        }
+        return comuna;
     }
 
+    /**
+     * Un solo INSERT: si el rut ya existe lo rechaza la llave primaria
+     */
     public boolean save(UserDto userDto){
-        if(userRepository.existsById(userDto.getRut())){
+        User user = Util.mapToUser(userDto, Comuna.builder().id(comunaExistente(userDto.getComuna())).build());
+        if(journal != null){
+            journal.registrar(TipoMutacion.GUARDAR, user);
+            return true;
+        }
+        try{
+            userRepository.insert(user);
+            eventPublisher.publishEvent(UsersChangedEvent.creados(List.of(user)));
+            return true;
+        }catch(DuplicateKeyException e){
             throw new IllegalArgumentException("El usuario ya existe");
         }
-        userRepository.saveAndFlush(
-            Util.mapToUser(
-                userDto,
-                comunaRepository.findById(
-                    userDto.getComuna()).orElseThrow(
-                        Util::throwUnexistingCommunaException)));
-        return userRepository.existsById(userDto.getRut());
     }
 
+    /**
+     * Un solo UPDATE: si no actualiza ninguna fila es porque el usuario no existe. Antes se lee (y bloquea) la fila
+     * en la misma transaccion, para que los contadores resten los valores que tenia.
+     */
     public boolean update(UserDto userDto){
-        if(!userRepository.existsById(userDto.getRut())){
+        User user = Util.mapToUser(userDto, comunaRepository.getReferenceById(comunaExistente(userDto.getComuna())));
+        if(journal != null){
+            journal.registrar(TipoMutacion.ACTUALIZAR, user);
+            return true;
+        }
+        /*La transaccion solo en este camino: en modo write-behind no se retiene una conexion mientras se escribe el diario*/
+        int actualizados = transactionTemplate.execute(status -> {
+            User anterior = userRepository.lockExisting(List.of(user.getRut())).get(user.getRut());
+            int filas = userRepository.updateByRut(user.getRut(), user.getNombre(), user.getApellido(),
+                                                   user.getFechaNacimiento(), user.getCalle(), user.getComuna());
+            if(filas > 0){
+                eventPublisher.publishEvent(new UsersChangedEvent(List.of(user), List.of(anterior)));
+            }
+            return filas;
+        });
+        if(actualizados == 0){
             throw Util.throwUnexistingUserException();
         }
-        return Util.mapToUserDto(
-            userRepository.saveAndFlush(
-                Util.mapToUser(
-                    userDto,
-                    comunaRepository.findById(userDto.getComuna()).orElseThrow(Util::throwUnexistingCommunaException)
-                )
-            )
-        ).equals(userDto);
+        return actualizados == 1;
     }
 
     public boolean delete(String rut){
-        if(!userRepository.existsById(rut)){
+        if(journal != null){
+            journal.registrar(TipoMutacion.ELIMINAR, User.builder().rut(rut).build());
+            return true;
+        }
+        int eliminados = transactionTemplate.execute(status -> {
+            User anterior = userRepository.lockExisting(List.of(rut)).get(rut);
+            int filas = userRepository.deleteByRut(rut);
+            if(filas > 0){
+                eventPublisher.publishEvent(new UsersChangedEvent(List.of(), List.of(anterior)));
+            }
+            return filas;
+        });
+        if(eliminados == 0){
             throw Util.throwUnexistingUserException();
         }
-        userRepository.deleteById(rut);
-        return !userRepository.existsById(rut);
+        return eliminados == 1;
     }
 
     public SearchResultDto findById(String rut){
-        return Util.mapToSearchDto(List.of(
-            userRepository.findById(rut)
-                          .orElseThrow(Util::throwUnexistingUserException))).getFirst();
+        esperarEscrituras();
+        return metrics.servicio("findById", () -> {
+            List<UserSearchRow> filas = userRepository.search(FiltroBusqueda.builder().rut(rut).build(), "", 1);
+            return metrics.mapeo(() -> filas.stream()
+                                            .findFirst()
+                                            .map(Util::mapToSearchDto)
+                                            .orElseThrow(Util::throwUnexistingUserException));
+        });
     }
 
     public void deleteTestUsers(){
-        userRepository.deleteTestUsers();
+        if(journal != null){
+            journal.bloquearRegistro();
+        }
+        try{
+            userRepository.deleteTestUsers();
+        }finally{
+            if(journal != null){
+                journal.desbloquearRegistro();
+            }
+        }
+        eventPublisher.publishEvent(UsersChangedEvent.desconocidos());
     }
 }
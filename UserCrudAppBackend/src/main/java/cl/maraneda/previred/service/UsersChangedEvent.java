@@ -0,0 +1,32 @@
+package cl.maraneda.previred.service;
+
+import cl.maraneda.previred.model.User;
+
+import java.util.List;
+
+/**
+ * Se publica cuando se crean, modifican o eliminan usuarios, para mantener al dia lo que se guarda en memoria
+ * (indice de autocompletado, conteos por comuna): se resta lo que habia antes y se suma lo que quedo
+ *
+ * @param usuarios Los usuarios creados o modificados, con todos sus valores nuevos
+ * @param anteriores Los usuarios modificados o eliminados, con los valores que tenian antes
+ * @param requiereReconstruccion Si hubo cambios cuyos valores anteriores no se conocen (traslados o eliminaciones
+ *                               por comuna o por region): en ese caso lo que se guarda en memoria se debe volver a contar
+ */
+public record UsersChangedEvent(List<User> usuarios, List<User> anteriores, boolean requiereReconstruccion) {
+
+    public UsersChangedEvent(List<User> usuarios, List<User> anteriores){
+        this(usuarios, anteriores, false);
+    }
+
+    public static UsersChangedEvent creados(List<User> usuarios){
+        return new UsersChangedEvent(usuarios, List.of(), false);
+    }
+
+    /**
+     * Cambios por conjunto (mover o eliminar usuarios por comuna o region) que no saben que usuarios tocaron
+     */
+    public static UsersChangedEvent desconocidos(){
+        return new UsersChangedEvent(List.of(), List.of(), true);
+    }
+}
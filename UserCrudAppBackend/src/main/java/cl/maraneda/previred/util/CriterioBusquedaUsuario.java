@@ -10,7 +10,8 @@ public enum CriterioBusquedaUsuario {
     POR_NOMBRE_COMPLETO("ByNombreAndByApellido"),
     POR_COMUNA("ByComuna"),
     POR_REGION("ByRegion"),
-    POR_RUT("ByRut");
+    POR_RUT("ByRut"),
+    POR_FILTROS("ByFiltros");
 
     private final String value;
 
@@ -0,0 +1,61 @@
+package cl.maraneda.previred.util;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.Period;
+import java.time.ZoneId;
+
+/**
+ * Edad en años a partir de la fecha de nacimiento, con el mismo resultado que
+ * Period.between(nacimiento, mañana).getYears(). La fecha de referencia se calcula una vez al dia y se
+ * reemplaza al pasar la medianoche, asi que cada llamada solo lee el reloj y compara enteros.
+ */
+public final class Edad {
+
+    /**
+     * @param hastaMillis Instante en que la referencia deja de valer (la proxima medianoche)
+     * @param diaEpoch Dia de la referencia contado desde 1970-01-01
+     * @param anio Año de la referencia
+     * @param mesDia Mes * 32 + dia de la referencia, para comparar fechas dentro de un año
+     */
+    private record Referencia(long hastaMillis, long diaEpoch, int anio, int mesDia) {
+    }
+
+    private static volatile Referencia referencia = calcular();
+
+    private Edad(){
+    }
+
+    private static Referencia calcular(){
+        ZoneId zona = ZoneId.systemDefault();
+        LocalDate hoy = LocalDate.now(zona);
+        /*Igual que el calculo anterior, se cuenta contra el dia siguiente*/
+        LocalDate manana = hoy.plusDays(1L);
+        Instant medianoche = manana.atTime(LocalTime.MIDNIGHT).atZone(zona).toInstant();
+        return new Referencia(medianoche.toEpochMilli(), manana.toEpochDay(), manana.getYear(), mesDia(manana));
+    }
+
+    private static int mesDia(LocalDate fecha){
+        return fecha.getMonthValue() * 32 + fecha.getDayOfMonth();
+    }
+
+    private static Referencia referencia(){
+        Referencia r = referencia;
+        if(System.currentTimeMillis() >= r.hastaMillis()){
+            r = calcular();
+            referencia = r;
+        }
+        return r;
+    }
+
+    public static int anios(LocalDate nacimiento){
+        Referencia r = referencia();
+        if(nacimiento.toEpochDay() > r.diaEpoch()){
+            /*Fecha futura: Period redondea hacia cero y no vale la pena replicarlo*/
+            return Period.between(nacimiento, LocalDate.ofEpochDay(r.diaEpoch())).getYears();
+        }
+        int anios = r.anio() - nacimiento.getYear();
+        return r.mesDia() < mesDia(nacimiento) ? anios - 1 : anios;
+    }
+}
@@ -0,0 +1,11 @@
+package cl.maraneda.previred.util;
+
+/**
+ * Resultado de una operacion sobre un usuario dentro de una operacion masiva
+ */
+public enum EstadoOperacion {
+    CREADO,
+    ACTUALIZADO,
+    ELIMINADO,
+    RECHAZADO
+}
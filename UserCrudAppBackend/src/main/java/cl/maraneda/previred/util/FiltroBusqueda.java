@@ -0,0 +1,21 @@
+package cl.maraneda.previred.util;
+
+import lombok.Builder;
+
+/**
+ * Filtros de una busqueda de usuarios. Los campos nulos no participan de la busqueda;
+ * los presentes se combinan con AND, o con OR si disyuncion es verdadero.
+ */
+@Builder
+public record FiltroBusqueda(String nombre,
+                             String apellido,
+                             String region,
+                             Integer comuna,
+                             String rut,
+                             boolean disyuncion) {
+    public static final FiltroBusqueda TODOS = FiltroBusqueda.builder().build();
+
+    public boolean isEmpty(){
+        return nombre == null && apellido == null && region == null && comuna == null && rut == null;
+    }
+}
@@ -0,0 +1,17 @@
+package cl.maraneda.previred.util;
+
+import lombok.Getter;
+
+@Getter
+public enum FormatoExportacion {
+    NDJSON("application/x-ndjson", "ndjson"),
+    CSV("text/csv", "csv");
+
+    private final String contentType;
+    private final String extension;
+
+    FormatoExportacion(String contentType, String extension){
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+}
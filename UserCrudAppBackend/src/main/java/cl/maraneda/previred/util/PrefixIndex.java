@@ -0,0 +1,96 @@
+package cl.maraneda.previred.util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * Indice de prefijos en memoria para autocompletar nombres. Las llaves se guardan sin tildes y en minusculas
+ * en un mapa ordenado, por lo que todas las que comparten un prefijo quedan contiguas: una busqueda es un
+ * salto al prefijo mas un recorrido de los nombres que lo comparten, guardando en un heap de tamano "limite"
+ * los que tienen mas usuarios. El mapa es concurrente, asi que las lecturas no se bloquean mientras se agregan nombres.
+ */
+public final class PrefixIndex {
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+
+    /**
+     * @param texto Como se muestra el nombre (la primera forma que se agrego)
+     * @param usuarios Cuantos usuarios tienen ese nombre
+     */
+    record Entrada(String texto, long usuarios) {
+    }
+
+    /*Primero los nombres con mas usuarios y, entre los que tienen los mismos, en orden alfabetico*/
+    private static final Comparator<Map.Entry<String, Entrada>> RELEVANCIA =
+        Comparator.<Map.Entry<String, Entrada>>comparingLong(e -> e.getValue().usuarios()).reversed()
+                  .thenComparing(Map.Entry::getKey);
+
+    private final ConcurrentSkipListMap<String, Entrada> entradas = new ConcurrentSkipListMap<>();
+
+    /**
+     * Quita tildes y dieresis (la enie queda como n), pasa a minusculas y elimina espacios sobrantes
+     */
+    public static String plegar(String texto){
+        String sinMarcas = MARCAS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        return sinMarcas.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    public void agregar(String texto){
+        agregar(texto, 1);
+    }
+
+    public void agregar(String texto, long usuarios){
+        if(texto == null || texto.isBlank() || usuarios <= 0){
+            return;
+        }
+        entradas.merge(plegar(texto), new Entrada(texto.trim(), usuarios),
+                       (actual, nueva) -> new Entrada(actual.texto(), actual.usuarios() + nueva.usuarios()));
+    }
+
+    /**
+     * Resta un usuario al nombre; si no le quedan usuarios, el nombre deja de sugerirse
+     */
+    public void quitar(String texto){
+        if(texto == null || texto.isBlank()){
+            return;
+        }
+        entradas.computeIfPresent(plegar(texto), (llave, actual) ->
+            actual.usuarios() <= 1 ? null : new Entrada(actual.texto(), actual.usuarios() - 1));
+    }
+
+    /**
+     * @param prefijo El prefijo escrito por el usuario (sin importar tildes ni mayusculas)
+     * @param limite Cantidad maxima de sugerencias
+     * @return Los "limite" nombres con mas usuarios que empiezan con el prefijo, de mas a menos usuarios
+     */
+    public List<String> buscar(String prefijo, int limite){
+        String llave = prefijo == null ? "" : plegar(prefijo);
+        if(llave.isEmpty() || limite <= 0){
+            return List.of();
+        }
+        /*La raiz del heap es la peor de las sugerencias elegidas hasta ahora: sale cuando llega una mejor*/
+        PriorityQueue<Map.Entry<String, Entrada>> mejores = new PriorityQueue<>(RELEVANCIA.reversed());
+        for(Map.Entry<String, Entrada> e : entradas.tailMap(llave, true).entrySet()){
+            if(!e.getKey().startsWith(llave)){
+                break;
+            }
+            mejores.add(e);
+            if(mejores.size() > limite){
+                mejores.poll();
+            }
+        }
+        List<Map.Entry<String, Entrada>> ordenadas = new ArrayList<>(mejores);
+        ordenadas.sort(RELEVANCIA);
+        return ordenadas.stream().map(e -> e.getValue().texto()).toList();
+    }
+
+    public int size(){
+        return entradas.size();
+    }
+}
@@ -3,12 +3,11 @@ package cl.maraneda.previred.util;
 import cl.maraneda.previred.exceptions.RUTException;
 import cl.maraneda.previred.exceptions.RutRuntimeException;
 
-import java.util.Arrays;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.IntStream;
-
 /**
  * Esta clase es una implementación del RUT usado en Chile
+ * <p>
+ * La lectura, validación y escritura se delegan en {@link RutCodec}; esta clase solo
+ * guarda el RUT empaquetado y traduce los códigos de error a excepciones.
  *
  * @author Tomas Barros <a href="mailto:bbarros@nic.cl">bbarros@nic.cl</a>
  * @version 1.0
@@ -16,15 +15,14 @@ import java.util.stream.IntStream;
  */
 public class RUT {
 
-    private final int[] numero;
-    private char digito;
-    public final short RUT_LENGTH = 9;
+    private final long rut;
+    public final short RUT_LENGTH = RutCodec.MAX_DIGITOS;
 
     /**
      * Crea un nuevo RUT vacío
      */
     public RUT() {
-        numero = new int[RUT_LENGTH];
+        rut = RutCodec.pack(0, '\0');
     }
 
     /**
@@ -34,41 +32,39 @@ public class RUT {
      * @param rut El String representativo del rut
      * @throws RUTException En caso que el String del RUT no esté bien formado
      * o el digito verificador no corresponda
+     * @throws RutRuntimeException En caso que el RUT tenga un caracter que no es digito ni punto separador de miles
      */
     public RUT(String rut) throws RUTException {
-        this();
-        String rutcompleto=rut;
-        char dig = rut.charAt(rut.length() - 2);
-        if (dig != '-')
-            throw (new RUTException("El RUT no esta bien formado (Sin guion)"));
-        dig = rut.charAt(rut.length() - 1);
-
-        if (!Character.isDigit(dig) && Character.toUpperCase(dig) != 'K')
-            throw (new RUTException("El RUT no está bien formado (" + dig + " no es un digito verificador valido)"));
-
-        digito = Character.toUpperCase(dig);
-
-        rut = rut.substring(0, rut.length() - 2);
-
-        int sl = rut.length();
-
-        if (sl > RUT_LENGTH + (RUT_LENGTH / 3))
-            throw (
-                    new RUTException("La cantidad de dígitos del RUT \"" + rutcompleto + "\"no es valido"));
-
-        AtomicInteger j = new AtomicInteger(0);
-        StringBuilder sbrut = new StringBuilder(rut);
-        IntStream.range(0, sl).forEach(i -> {
-            char ch = sbrut.toString().charAt(sl - i - 1);
-            if (j.get() != 0 && (j.get() % 3) == 0 && ch == '.')
-                return;
-            if (!Character.isDigit(ch))
-                throw (new RutRuntimeException("El RUT no está bien formado (el caracter " + ch + " no es un digito)"));
-            numero[RUT_LENGTH - 1 - j.getAndIncrement()] =
-                    Character.digit(ch, Character.LETTER_NUMBER);
-        });
-        if (Character.toUpperCase(digito) != getDigito())
-            throw (new RUTException("El dígito verificador del rut " + rut + " no corresponde:"+digito+" <> "+getDigito()));
+        long valor = RutCodec.parse(rut);
+        if (valor == RutCodec.CARACTER_INVALIDO)
+            throw new RutRuntimeException("El RUT no está bien formado (el caracter " + caracterInvalido(rut) + " no es un digito)");
+        if (!RutCodec.isValid(valor))
+            throw excepcion(rut, valor);
+        this.rut = valor;
+    }
+
+    private static RUTException excepcion(String rut, long error) {
+        if (error == RutCodec.SIN_GUION)
+            return new RUTException("El RUT no esta bien formado (Sin guion)");
+        if (error == RutCodec.DIGITO_INVALIDO)
+            return new RUTException("El RUT no está bien formado (" + rut.charAt(rut.length() - 1) + " no es un digito verificador valido)");
+        if (error == RutCodec.DEMASIADOS_DIGITOS)
+            return new RUTException("La cantidad de dígitos del RUT \"" + rut + "\"no es valido");
+        if (error == RutCodec.SIN_DIGITOS)
+            return new RUTException("El RUT no está bien formado (no tiene digitos)");
+        String cuerpo = rut.substring(0, rut.length() - 2);
+        return new RUTException("El dígito verificador del rut " + cuerpo + " no corresponde:"
+                + Character.toUpperCase(rut.charAt(rut.length() - 1)) + " <> "
+                + RutCodec.digitoVerificador(Integer.parseInt(cuerpo.replace(".", ""))));
+    }
+
+    private static char caracterInvalido(String rut) {
+        for (int i = rut.length() - 3; i >= 0; i--) {
+            char ch = rut.charAt(i);
+            if ((ch < '0' || ch > '9') && ch != '.')
+                return ch;
+        }
+        return '.';
     }
 
     /**
@@ -77,25 +73,7 @@ public class RUT {
      * @return El String del RUT
      */
     public String getFormated() {
-        StringBuilder value=new StringBuilder();
-        boolean[] escribir = {false};
-        AtomicInteger point = new AtomicInteger();
-        Arrays.stream(numero).forEach(num -> {
-            if(num != 0){
-                escribir[0] = true;
-            }
-            if(point.get() !=0 && point.get() % 3 == 0){
-                value.append(".");
-            }
-            if(escribir[0]){
-                value.append(
-                    Character.toUpperCase(
-                        Character.forDigit(num, Character.LETTER_NUMBER)));
-            }
-            point.incrementAndGet();
-        });
-
-        return value.append("-").append(digito).toString();
+        return RutCodec.toFormattedString(rut);
     }
 
     /**
@@ -104,7 +82,7 @@ public class RUT {
      * @return El String del RUT
      */
     public String toString() {
-        return (getPure() + "-" + digito);
+        return RutCodec.toString(rut);
     }
 
     /**
@@ -113,56 +91,30 @@ public class RUT {
      * @return el RUT del contribuyente sin puntos, guiones ni dígito verificador
      */
     public String getPure() {
-        StringBuilder value = new StringBuilder();
-        boolean[] escribir = {false};
-        IntStream.range(0, RUT_LENGTH).forEach(i -> {
-            if (numero[i] != 0)
-                escribir[0] = true;
-            if (escribir[0])
-                value.append(Character.toUpperCase(
-                        Character.forDigit(numero[i], Character.LETTER_NUMBER)));
-        });
-        return (value.toString());
+        int cuerpo = RutCodec.cuerpo(rut);
+        return cuerpo == 0 ? "" : Integer.toString(cuerpo);
+    }
+
+    /**
+     * Obtiene el RUT empaquetado según {@link RutCodec}
+     *
+     * @return El RUT empaquetado
+     */
+    public long toLong() {
+        return rut;
     }
 
     public static char getDigito(int num){
-        String snum=String.valueOf(num);
-        int[] anum = new int[snum.length()];
-        AtomicInteger j = new AtomicInteger();
-        AtomicInteger mult = new AtomicInteger(2);
-        AtomicInteger suma = new AtomicInteger();
-        snum.chars().forEach(c ->
-            anum[j.getAndIncrement()]=Character.digit(c, Character.LETTER_NUMBER)
-        );
-
-        Arrays.stream(anum).boxed().toList().reversed().forEach(n ->{
-             suma.addAndGet(mult.get() * n);
-             if(mult.get() == 7){
-                 mult.set(2);
-             }else{
-                 mult.incrementAndGet();
-             }
-        });
-
-        int mod = suma.get() % 11;
-
-        return switch (mod) {
-            case 0 -> ('0');
-            case 1 -> ('K');
-            default -> (
-                    Character.toUpperCase(
-                            Character.forDigit(
-                                    11 - mod,
-                                    Character.LETTER_NUMBER)));
-        };
+        return RutCodec.digitoVerificador(num);
     }
+
     /**
      * Calcula el dígito verificador del RUT
      *
      * @return El dígito verificador
      */
     public char getDigito() {
-        return RUT.getDigito(Integer.parseInt(this.getPure()));
+        return RutCodec.digitoVerificador(RutCodec.cuerpo(rut));
     }
 
     /**
@@ -180,11 +132,13 @@ public class RUT {
      * @return true en caso que sean iguales o false en caso contrario
      */
     public boolean equals(Object obj) {
-        if (!(obj instanceof RUT rut))
-            return (false);
-        if (rut.digito != digito)
+        if (!(obj instanceof RUT other))
             return (false);
-        return Arrays.equals(rut.numero, this.numero);
+        return other.rut == this.rut;
     }
-}
 
+    @Override
+    public int hashCode() {
+        return Long.hashCode(rut);
+    }
+}
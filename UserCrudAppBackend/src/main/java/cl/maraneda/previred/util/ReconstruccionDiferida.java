@@ -0,0 +1,76 @@
+package cl.maraneda.previred.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Vuelve a armar una estructura en memoria un tiempo despues de que se pide, con una sola reconstruccion para
+ * todas las peticiones que lleguen mientras tanto. Si mientras se reconstruia se agrego algo a la estructura
+ * anterior (ver {@link #registrarAgregado()}), se programa otra, porque eso pudo quedar fuera.
+ */
+@Slf4j
+public final class ReconstruccionDiferida implements AutoCloseable {
+    private final String nombre;
+    private final long retrasoMs;
+    private final Runnable reconstruir;
+    private final AtomicBoolean pendiente = new AtomicBoolean();
+    private final AtomicLong agregados = new AtomicLong();
+    private final ScheduledExecutorService executor;
+
+    /**
+     * @param nombre Nombre del hilo y de la estructura en los mensajes de log
+     * @param retrasoMs Cuanto se espera antes de reconstruir
+     * @param reconstruir Arma la estructura nueva y reemplaza la anterior
+     */
+    public ReconstruccionDiferida(String nombre, long retrasoMs, Runnable reconstruir){
+        this.nombre = nombre;
+        this.retrasoMs = retrasoMs;
+        this.reconstruir = reconstruir;
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, nombre);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Reconstruye en el hilo actual
+     */
+    public void ahora(){
+        long antes = agregados.get();
+        reconstruir.run();
+        if(agregados.get() != antes){
+            programar();
+        }
+    }
+
+    /**
+     * Se debe llamar antes de agregar o quitar algo de la estructura actual sin reconstruirla
+     */
+    public void registrarAgregado(){
+        agregados.incrementAndGet();
+    }
+
+    public void programar(){
+        if(pendiente.compareAndSet(false, true)){
+            executor.schedule(() -> {
+                pendiente.set(false);
+                try{
+                    ahora();
+                }catch(RuntimeException e){
+                    log.warn("No se pudo reconstruir {}", nombre, e);
+                }
+            }, retrasoMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void close(){
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,219 @@
+package cl.maraneda.previred.util;
+
+import cl.maraneda.previred.dto.ComunaDto;
+import cl.maraneda.previred.dto.ComunaRow;
+import cl.maraneda.previred.dto.ReferenceBundleDto;
+import cl.maraneda.previred.dto.RegionDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.util.DigestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Foto inmutable de las regiones y comunas, con las respuestas JSON ya serializadas.
+ * Nunca se modifica: cuando cambian los datos de referencia se arma una nueva y se reemplaza completa.
+ * <p>
+ * Las comunas tambien quedan en un arreglo indexado por su id (son unos cientos, con ids correlativas), asi que
+ * saber si una comuna existe, su nombre o su region es leer una posicion de un arreglo. Si las ids vienen muy
+ * dispersas (por ejemplo, una comuna con id 2147483647), el arreglo seria enorme y se usa un mapa.
+ */
+public final class ReferenceSnapshot {
+    public static final RegionDto REGION_POR_DEFECTO =
+        RegionDto.builder().id("0").nombre("Seleccione una region").build();
+    public static final ComunaDto COMUNA_POR_DEFECTO =
+        ComunaDto.builder().id(0).nombre("Seleccione una comuna").build();
+    /*El arreglo se usa si no tiene mas de 4 posiciones por comuna (o si es chico de todas formas)*/
+    private static final int POSICIONES_POR_COMUNA = 4;
+    private static final int LARGO_MINIMO = 256;
+
+    /**
+     * Cuerpo JSON listo para escribirse en la respuesta junto a su ETag (fuerte, derivado del contenido)
+     */
+    public record JsonBody(byte[] json, String etag) {
+        static JsonBody of(ObjectMapper mapper, Object value) throws JsonProcessingException {
+            byte[] json = mapper.writeValueAsBytes(value);
+            return new JsonBody(json, "\"" + DigestUtils.md5DigestAsHex(json) + "\"");
+        }
+    }
+
+    private final List<RegionDto> regiones;
+    private final Map<String, List<ComunaDto>> comunasPorRegion;
+    private final JsonBody regionesJson;
+    private final Map<String, JsonBody> comunasJson;
+    private final JsonBody bundleJson;
+    /*Por id de comuna: la comuna, o null si no existe. Vacio si las comunas estan en comunasDispersas*/
+    private final ComunaRow[] comunaPorId;
+    /*Solo si las ids son demasiado dispersas para el arreglo*/
+    private final Map<Integer, ComunaRow> comunasDispersas;
+
+    private ReferenceSnapshot(List<RegionDto> regiones, Map<String, List<ComunaDto>> comunasPorRegion,
+                              ComunaRow[] comunaPorId, Map<Integer, ComunaRow> comunasDispersas,
+                              JsonBody regionesJson, Map<String, JsonBody> comunasJson, JsonBody bundleJson){
+        this.regiones = regiones;
+        this.comunasPorRegion = comunasPorRegion;
+        this.comunaPorId = comunaPorId;
+        this.comunasDispersas = comunasDispersas;
+        this.regionesJson = regionesJson;
+        this.comunasJson = comunasJson;
+        this.bundleJson = bundleJson;
+    }
+
+    /**
+     * Arma la foto a partir de las regiones (ya ordenadas) y de todas las comunas (ya ordenadas)
+     *
+     * @param regiones Las regiones en el orden en que se deben mostrar
+     * @param filas Todas las comunas, incluidas las que apuntan a una region que no existe
+     * @param mapper El ObjectMapper usado para serializar las respuestas
+     * @return La foto de los datos de referencia
+     */
+    public static ReferenceSnapshot of(List<RegionDto> regiones, List<ComunaRow> filas, ObjectMapper mapper){
+        Set<String> regionIds = new HashSet<>();
+        regiones.forEach(r -> regionIds.add(r.getId()));
+        int minId = filas.stream().mapToInt(ComunaRow::id).min().orElse(0);
+        int maxId = filas.stream().mapToInt(ComunaRow::id).max().orElse(-1);
+        boolean densas = minId >= 0 && maxId < Math.max(LARGO_MINIMO, (long) POSICIONES_POR_COMUNA * filas.size());
+        ComunaRow[] comunaPorId = new ComunaRow[densas ? maxId + 1 : 0];
+        Map<Integer, ComunaRow> comunasDispersas = densas ? null : new HashMap<>();
+        Map<String, List<ComunaDto>> comunasPorRegion = new LinkedHashMap<>();
+        for(ComunaRow c : filas){
+            /*Las comunas cuya region no existe se pueden usar, pero no aparecen en los select*/
+            if(regionIds.contains(c.regionId())){
+                comunasPorRegion.computeIfAbsent(c.regionId(), k -> new ArrayList<>())
+                                .add(ComunaDto.builder().id(c.id()).nombre(c.nombre()).build());
+            }
+            if(densas){
+                comunaPorId[c.id()] = c;
+            }else{
+                comunasDispersas.put(c.id(), c);
+            }
+        }
+        try{
+            List<RegionDto> regionesSinPorDefecto = List.copyOf(regiones);
+            Map<String, List<ComunaDto>> comunas = new LinkedHashMap<>();
+            Map<String, JsonBody> comunasJson = new LinkedHashMap<>();
+            for(Map.Entry<String, List<ComunaDto>> e : comunasPorRegion.entrySet()){
+                comunas.put(e.getKey(), List.copyOf(e.getValue()));
+                List<ComunaDto> conPorDefecto = new ArrayList<>(e.getValue().size() + 1);
+                conPorDefecto.add(COMUNA_POR_DEFECTO);
+                conPorDefecto.addAll(e.getValue());
+                comunasJson.put(e.getKey(), JsonBody.of(mapper, conPorDefecto));
+            }
+            List<RegionDto> regionesConPorDefecto = new ArrayList<>(regiones.size() + 1);
+            regionesConPorDefecto.add(REGION_POR_DEFECTO);
+            regionesConPorDefecto.addAll(regiones);
+            return new ReferenceSnapshot(
+                regionesSinPorDefecto,
+                Map.copyOf(comunas),
+                comunaPorId,
+                densas ? null : Map.copyOf(comunasDispersas),
+                JsonBody.of(mapper, regionesConPorDefecto),
+                Map.copyOf(comunasJson),
+                JsonBody.of(mapper, ReferenceBundleDto.builder().regiones(regionesSinPorDefecto).comunas(comunas).build()));
+        }catch(JsonProcessingException e){
+            throw new IllegalStateException("No se pudieron serializar los datos de referencia", e);
+        }
+    }
+
+    /**
+     * Arma una foto igual a esta, pero sin la region ni sus comunas, sin ir a la base de datos
+     *
+     * @param regionId La region que se quita
+     * @param mapper El ObjectMapper usado para serializar las respuestas
+     */
+    public ReferenceSnapshot sinRegion(String regionId, ObjectMapper mapper){
+        List<RegionDto> quedan = new ArrayList<>(regiones.size());
+        List<ComunaRow> filas = new ArrayList<>();
+        /*Se mantiene el orden de las comunas dentro de cada region*/
+        for(RegionDto r : regiones){
+            if(!r.getId().equals(regionId)){
+                quedan.add(r);
+                comunas(r.getId()).forEach(c -> filas.add(comuna(c.getId())));
+            }
+        }
+        /*Y las que no aparecen en los select, porque su region no existe o no tienen*/
+        Set<String> listadas = new HashSet<>();
+        regiones.forEach(r -> listadas.add(r.getId()));
+        Collection<ComunaRow> todas = comunasDispersas != null ? comunasDispersas.values() : Arrays.asList(comunaPorId);
+        for(ComunaRow c : todas){
+            if(c != null && !listadas.contains(c.regionId()) && !regionId.equals(c.regionId())){
+                filas.add(c);
+            }
+        }
+        return of(quedan, filas, mapper);
+    }
+
+    public List<RegionDto> regiones(){
+        return regiones;
+    }
+
+    public List<ComunaDto> comunas(String regionId){
+        return comunasPorRegion.getOrDefault(regionId, List.of());
+    }
+
+    private ComunaRow comuna(Integer comunaId){
+        if(comunaId == null){
+            return null;
+        }
+        if(comunasDispersas != null){
+            return comunasDispersas.get(comunaId);
+        }
+        return comunaId >= 0 && comunaId < comunaPorId.length ? comunaPorId[comunaId] : null;
+    }
+
+    /**
+     * @param comunaId La id de la comuna
+     * @return true si la comuna existe, aunque no tenga region asociada
+     */
+    public boolean existeComuna(Integer comunaId){
+        return comuna(comunaId) != null;
+    }
+
+    /**
+     * @param comunaId La id de la comuna
+     * @return La id de la region de la comuna, o null si la comuna no existe o no tiene region
+     */
+    public String regionDeComuna(Integer comunaId){
+        ComunaRow c = comuna(comunaId);
+        return c == null ? null : c.regionId();
+    }
+
+    /**
+     * @param comunaId La id de la comuna
+     * @return El nombre de la comuna, o null si no existe
+     */
+    public String nombreComuna(Integer comunaId){
+        ComunaRow c = comuna(comunaId);
+        return c == null ? null : c.nombre();
+    }
+
+    /**
+     * @return Las regiones, precedidas por la opcion por defecto del select
+     */
+    public JsonBody regionesJson(){
+        return regionesJson;
+    }
+
+    /**
+     * @param regionId La id de la region
+     * @return Las comunas de la region precedidas por la opcion por defecto del select, o null si la region no tiene comunas
+     */
+    public JsonBody comunasJson(String regionId){
+        return comunasJson.get(regionId);
+    }
+
+    /**
+     * @return Todas las regiones y todas las comunas agrupadas por region, sin opciones por defecto
+     */
+    public JsonBody bundleJson(){
+        return bundleJson;
+    }
+}
@@ -0,0 +1,188 @@
+package cl.maraneda.previred.util;
+
+/**
+ * Lectura, validación y escritura de RUTs sin crear objetos.
+ * <p>
+ * Un RUT válido se representa con un long: el cuerpo (sin puntos ni dígito verificador) en los
+ * bits altos y el carácter del dígito verificador ('0' a '9' o 'K') en los 8 bits bajos.
+ * Los errores se informan con valores negativos, por lo que {@link #isValid(long)} basta para
+ * distinguir un RUT de un error.
+ */
+public final class RutCodec {
+    public static final int MAX_DIGITOS = 9;
+
+    /** Falta el guion antes del dígito verificador */
+    public static final long SIN_GUION = -1L;
+    /** El último carácter no es un dígito ni K */
+    public static final long DIGITO_INVALIDO = -2L;
+    /** El cuerpo tiene más de {@link #MAX_DIGITOS} dígitos */
+    public static final long DEMASIADOS_DIGITOS = -3L;
+    /** El cuerpo tiene un carácter que no es dígito ni un punto separador de miles bien ubicado */
+    public static final long CARACTER_INVALIDO = -4L;
+    /** El dígito verificador no corresponde al cuerpo */
+    public static final long NO_CORRESPONDE = -5L;
+    /** El cuerpo no tiene dígitos o es cero */
+    public static final long SIN_DIGITOS = -6L;
+
+    /** Largo máximo del RUT escrito con puntos: 9 dígitos, 2 puntos, guion y dígito verificador */
+    public static final int MAX_LARGO_FORMATEADO = 13;
+
+    private static final int[] POTENCIAS = {
+        1, 10, 100, 1_000, 10_000, 100_000, 1_000_000, 10_000_000, 100_000_000
+    };
+
+    private RutCodec(){
+    }
+
+    /**
+     * Lee un RUT en formato xxxxxxxx-x o xx.xxx.xxx-x
+     *
+     * @param rut El texto del RUT
+     * @return El RUT empaquetado, o un código de error negativo
+     */
+    public static long parse(CharSequence rut){
+        return parse(rut, 0, rut.length());
+    }
+
+    /**
+     * Lee un RUT en formato xxxxxxxx-x o xx.xxx.xxx-x ubicado entre desde (inclusive) y hasta (exclusive)
+     *
+     * @param rut El texto que contiene el RUT
+     * @param desde Posición del primer carácter del RUT
+     * @param hasta Posición siguiente al último carácter del RUT
+     * @return El RUT empaquetado, o un código de error negativo
+     */
+    public static long parse(CharSequence rut, int desde, int hasta){
+        if(hasta - desde < 2 || rut.charAt(hasta - 2) != '-'){
+            return SIN_GUION;
+        }
+        char dv = rut.charAt(hasta - 1);
+        if(dv == 'k'){
+            dv = 'K';
+        }
+        if((dv < '0' || dv > '9') && dv != 'K'){
+            return DIGITO_INVALIDO;
+        }
+        int cuerpo = 0;
+        int digitos = 0;
+        /*Cantidad de digitos leidos al encontrar el ultimo punto, -1 si el RUT viene sin puntos.
+          Si viene con puntos, tiene que haber uno cada 3 digitos y el cuerpo no puede empezar con uno*/
+        int punto = -1;
+        for(int i = hasta - 3; i >= desde; i--){
+            char ch = rut.charAt(i);
+            if(ch == '.'){
+                if(digitos != (punto < 0 ? 3 : punto + 3)){
+                    return CARACTER_INVALIDO;
+                }
+                punto = digitos;
+                continue;
+            }
+            if(ch < '0' || ch > '9' || (punto >= 0 && digitos == punto + 3)){
+                return CARACTER_INVALIDO;
+            }
+            if(digitos == MAX_DIGITOS){
+                return DEMASIADOS_DIGITOS;
+            }
+            cuerpo += (ch - '0') * POTENCIAS[digitos++];
+        }
+        if(punto >= 0 && punto == digitos){
+            return CARACTER_INVALIDO;
+        }
+        if(cuerpo == 0){
+            return SIN_DIGITOS;
+        }
+        if(digitoVerificador(cuerpo) != dv){
+            return NO_CORRESPONDE;
+        }
+        return pack(cuerpo, dv);
+    }
+
+    public static boolean isValid(CharSequence rut){
+        return rut != null && isValid(parse(rut));
+    }
+
+    public static boolean isValid(long rut){
+        return rut >= 0;
+    }
+
+    public static long pack(int cuerpo, char digito){
+        return ((long) cuerpo << 8) | (digito & 0xFF);
+    }
+
+    public static int cuerpo(long rut){
+        return (int) (rut >>> 8);
+    }
+
+    public static char digito(long rut){
+        return (char) (rut & 0xFF);
+    }
+
+    /**
+     * Calcula el dígito verificador de un cuerpo de RUT (módulo 11)
+     *
+     * @param cuerpo El RUT sin puntos, guion ni dígito verificador
+     * @return El dígito verificador, entre '0' y '9' o 'K'
+     */
+    public static char digitoVerificador(int cuerpo){
+        int suma = 0;
+        int mult = 2;
+        for(int n = cuerpo; n > 0; n /= 10){
+            suma += (n % 10) * mult;
+            mult = mult == 7 ? 2 : mult + 1;
+        }
+        int mod = suma % 11;
+        return switch(mod){
+            case 0 -> '0';
+            case 1 -> 'K';
+            default -> (char) ('0' + 11 - mod);
+        };
+    }
+
+    /**
+     * Escribe el RUT en destino a partir de la posición desde
+     *
+     * @param rut El RUT empaquetado
+     * @param conPuntos true para el formato xx.xxx.xxx-x, false para xxxxxxxx-x
+     * @param destino Arreglo con al menos {@link #MAX_LARGO_FORMATEADO} posiciones libres desde la posición indicada
+     * @param desde Posición donde se escribe el primer carácter
+     * @return La cantidad de caracteres escritos
+     */
+    public static int format(long rut, boolean conPuntos, char[] destino, int desde){
+        int cuerpo = cuerpo(rut);
+        int digitos = 0;
+        for(int n = cuerpo; n > 0; n /= 10){
+            digitos++;
+        }
+        int largo = digitos + (conPuntos ? (digitos - 1) / 3 : 0) + 2;
+        int pos = desde + largo - 1;
+        destino[pos--] = digito(rut);
+        destino[pos--] = '-';
+        int escritos = 0;
+        for(int n = cuerpo; n > 0; n /= 10){
+            if(conPuntos && escritos != 0 && escritos % 3 == 0){
+                destino[pos--] = '.';
+            }
+            destino[pos--] = (char) ('0' + n % 10);
+            escritos++;
+        }
+        return largo;
+    }
+
+    /**
+     * @param rut El RUT empaquetado
+     * @return El RUT en formato xxxxxxxx-x
+     */
+    public static String toString(long rut){
+        char[] buffer = new char[MAX_LARGO_FORMATEADO];
+        return new String(buffer, 0, format(rut, false, buffer, 0));
+    }
+
+    /**
+     * @param rut El RUT empaquetado
+     * @return El RUT en formato xx.xxx.xxx-x
+     */
+    public static String toFormattedString(long rut){
+        char[] buffer = new char[MAX_LARGO_FORMATEADO];
+        return new String(buffer, 0, format(rut, true, buffer, 0));
+    }
+}
@@ -0,0 +1,117 @@
+package cl.maraneda.previred.util;
+
+import cl.maraneda.previred.dto.UserSearchRow;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Escribe usuarios de a uno en el formato de exportacion, sin acumularlos.
+ * Al cerrarlo se vacian los buffers, pero el OutputStream de destino queda abierto.
+ */
+public abstract class UserExportWriter implements Closeable {
+    static final String[] COLUMNAS =
+        {"rut", "nombre", "apellido", "fechaNacimiento", "calle", "comuna", "nombreComuna", "region"};
+
+    public static UserExportWriter of(FormatoExportacion formato, OutputStream out, ObjectMapper mapper) throws IOException {
+        return switch(formato){
+            case NDJSON -> new Ndjson(out, mapper);
+            case CSV -> new Csv(out);
+        };
+    }
+
+    public abstract void write(UserSearchRow row) throws IOException;
+
+    private static final class Ndjson extends UserExportWriter {
+        private final JsonGenerator gen;
+
+        private Ndjson(OutputStream out, ObjectMapper mapper) throws IOException {
+            gen = mapper.createGenerator(out)
+                        .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                        .setRootValueSeparator(new SerializedString("\n"));
+        }
+
+        @Override
+        public void write(UserSearchRow row) throws IOException {
+            gen.writeStartObject();
+            gen.writeStringField(COLUMNAS[0], row.rut());
+            gen.writeStringField(COLUMNAS[1], row.nombre());
+            gen.writeStringField(COLUMNAS[2], row.apellido());
+            gen.writeStringField(COLUMNAS[3], Util.INPUT_DATE_FORMAT.format(row.fechaNacimiento()));
+            gen.writeStringField(COLUMNAS[4], row.calle());
+            if(row.comuna() != null){
+                gen.writeNumberField(COLUMNAS[5], row.comuna());
+            }else{
+                gen.writeNullField(COLUMNAS[5]);
+            }
+            gen.writeStringField(COLUMNAS[6], row.nombreComuna());
+            gen.writeStringField(COLUMNAS[7], row.region());
+            gen.writeEndObject();
+        }
+
+        /*El separador solo va entre registros, asi que la ultima linea se termina aqui*/
+        @Override
+        public void close() throws IOException {
+            if(gen.getOutputContext().getEntryCount() > 0){
+                gen.writeRaw('\n');
+            }
+            gen.close();
+        }
+    }
+
+    private static final class Csv extends UserExportWriter {
+        private final Writer writer;
+
+        private Csv(OutputStream out) throws IOException {
+            writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+            writer.write(String.join(",", COLUMNAS));
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void write(UserSearchRow row) throws IOException {
+            campo(row.rut()).write(',');
+            campo(row.nombre()).write(',');
+            campo(row.apellido()).write(',');
+            campo(Util.INPUT_DATE_FORMAT.format(row.fechaNacimiento())).write(',');
+            campo(row.calle()).write(',');
+            campo(row.comuna() != null ? row.comuna().toString() : null).write(',');
+            campo(row.nombreComuna()).write(',');
+            campo(row.region()).write("\r\n");
+        }
+
+        /*RFC 4180: se encierra entre comillas solo si hace falta, doblando las comillas internas*/
+        private Writer campo(String valor) throws IOException {
+            if(valor == null){
+                return writer;
+            }
+            boolean comillas = false;
+            for(int i = 0; i < valor.length() && !comillas; i++){
+                char c = valor.charAt(i);
+                comillas = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if(!comillas){
+                writer.write(valor);
+                return writer;
+            }
+            writer.write('"');
+            writer.write(valor.replace("\"", "\"\""));
+            writer.write('"');
+            return writer;
+        }
+
+        /*Solo se vacia: el OutputStream es de quien lo abrio*/
+        @Override
+        public void close() throws IOException {
+            writer.flush();
+        }
+    }
+}
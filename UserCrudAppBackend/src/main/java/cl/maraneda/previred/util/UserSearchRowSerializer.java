@@ -0,0 +1,75 @@
+package cl.maraneda.previred.util;
+
+import cl.maraneda.previred.dto.UserSearchRow;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.time.LocalDate;
+
+/**
+ * Escribe una fila de busqueda directamente en el JsonGenerator, con los mismos campos que SearchResultDto
+ * (salvo criteria, que en un resultado siempre era null), sin armar el DTO ni pasar por reflexion.
+ * Sirve para JSON, CBOR y Smile.
+ */
+public class UserSearchRowSerializer extends StdSerializer<UserSearchRow> {
+    private static final SerializableString RUT = new SerializedString("rut");
+    private static final SerializableString NOMBRE = new SerializedString("nombre");
+    private static final SerializableString APELLIDO = new SerializedString("apellido");
+    private static final SerializableString CALLE = new SerializedString("calle");
+    private static final SerializableString FECHA_NACIMIENTO = new SerializedString("fechaNacimiento");
+    private static final SerializableString COMUNA = new SerializedString("comuna");
+    private static final SerializableString REGION = new SerializedString("region");
+    private static final SerializableString NOMBRE_COMUNA = new SerializedString("nombreComuna");
+
+    public UserSearchRowSerializer(){
+        super(UserSearchRow.class);
+    }
+
+    @Override
+    public void serialize(UserSearchRow row, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject(row);
+        gen.writeFieldName(RUT);
+        gen.writeString(row.rut());
+        gen.writeFieldName(NOMBRE);
+        gen.writeString(row.nombre());
+        gen.writeFieldName(APELLIDO);
+        gen.writeString(row.apellido());
+        gen.writeFieldName(CALLE);
+        gen.writeString(row.calle());
+        gen.writeFieldName(FECHA_NACIMIENTO);
+        gen.writeString(row.fechaNacimiento() != null ? formatoBusqueda(row.fechaNacimiento()) : null);
+        gen.writeFieldName(COMUNA);
+        if(row.comuna() != null){
+            gen.writeNumber(row.comuna());
+        }else{
+            gen.writeNull();
+        }
+        gen.writeFieldName(REGION);
+        gen.writeString(row.region());
+        gen.writeFieldName(NOMBRE_COMUNA);
+        gen.writeString(row.nombreComuna());
+        gen.writeEndObject();
+    }
+
+    /**
+     * Lo mismo que String.format("%s (%d años)", OUTPUT_DATE_FORMAT.format(fecha), Util.getYears(fecha))
+     */
+    public static String formatoBusqueda(LocalDate fecha){
+        StringBuilder sb = new StringBuilder(24);
+        dosDigitos(sb, fecha.getDayOfMonth()).append('/');
+        dosDigitos(sb, fecha.getMonthValue()).append('/');
+        int anio = fecha.getYear();
+        for(int divisor = 1000; divisor > 1 && anio < divisor; divisor /= 10){
+            sb.append('0');
+        }
+        return sb.append(anio).append(" (").append(Edad.anios(fecha)).append(" años)").toString();
+    }
+
+    private static StringBuilder dosDigitos(StringBuilder sb, int valor){
+        return sb.append((char) ('0' + valor / 10)).append((char) ('0' + valor % 10));
+    }
+}
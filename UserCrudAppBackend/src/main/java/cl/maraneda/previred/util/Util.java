@@ -1,39 +1,29 @@
 package cl.maraneda.previred.util;
 
+import cl.maraneda.previred.dto.SearchPageDto;
 import cl.maraneda.previred.dto.SearchResultDto;
 import cl.maraneda.previred.dto.UserDto;
+import cl.maraneda.previred.dto.UserSearchRow;
+import cl.maraneda.previred.mapper.UserMapper;
 import cl.maraneda.previred.model.Comuna;
 import cl.maraneda.previred.model.User;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.time.Instant;
+import java.nio.charset.StandardCharsets;
+import java.text.ParsePosition;
+import java.time.DateTimeException;
 import java.time.LocalDate;
-import java.time.Period;
-import java.time.ZoneId;
-import java.util.Date;
+import java.time.format.DateTimeFormatter;
+import java.util.Base64;
 import java.util.List;
 import java.util.Random;
-import java.util.stream.Collectors;
 
 public class Util {
-    public static final SimpleDateFormat INPUT_DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd");
-    public static final SimpleDateFormat OUTPUT_DATE_FORMAT = new SimpleDateFormat("dd/MM/yyyy");
+    /*DateTimeFormatter es inmutable, por lo que se puede compartir entre todos los hilos*/
+    public static final DateTimeFormatter INPUT_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    public static final DateTimeFormatter OUTPUT_DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
 
     public static UserDto mapToUserDto(User item){
-        return UserDto.builder()
-                .nombre(item.getNombre())
-                .apellido(item.getApellido())
-                .rut(item.getRut())
-                .fechaNacimiento(
-                        String.format(
-                                "%s (%d) años",
-                                INPUT_DATE_FORMAT.format(item.getFechaNacimiento()),
-                                getYears(item.getFechaNacimiento())
-                        ))
-                .calle(item.getCalle())
-                .comuna(item.getComuna().getId())
-                .build();
+        return UserMapper.INSTANCE.toUserDto(item);
     }
     public static User mapToUser(UserDto input, Comuna c){
         try{
@@ -41,37 +31,61 @@ public class Util {
                       .rut(input.getRut())
                    .nombre(input.getNombre())
                    .apellido(input.getApellido())
-                   .fechaNacimiento(INPUT_DATE_FORMAT.parse(input.getFechaNacimiento()))
+                   .fechaNacimiento(parseFechaNacimiento(input.getFechaNacimiento()))
                    .calle(input.getCalle())
                    .comuna(c)
                    .build();
         }catch(NumberFormatException e){
             throw new IllegalArgumentException("Identificador de comuna no reconocido");
-        }catch(ParseException e){
+        }catch(DateTimeException e){
             throw new IllegalArgumentException("Formato de fecha distinto de yyyy-MM-dd");
         }
     }
 
+    /*Igual que SimpleDateFormat.parse, ignora lo que venga despues de la fecha (ej. "2000-01-01 (25 años)")*/
+    public static LocalDate parseFechaNacimiento(String fecha){
+        return LocalDate.from(INPUT_DATE_FORMAT.parse(fecha, new ParsePosition(0)));
+    }
+
     public static List<SearchResultDto> mapToSearchDto(List<User> input){
-        return input.stream()
-                    .map(item -> {
-                        return SearchResultDto.builder()
-                                        .nombre(item.getNombre())
-                                        .apellido(item.getApellido())
-                                        .rut(item.getRut())
-                                        .fechaNacimiento(
-                                          String.format(
-                                            "%s (%d años)",
-                                            OUTPUT_DATE_FORMAT.format(item.getFechaNacimiento()),
-                                            getYears(item.getFechaNacimiento())
-                                          ))
-                                        .calle(item.getCalle())
-                                        .nombreComuna(item.getComuna().getNombre())
-                                        .comuna(item.getComuna().getId())
-                                        .region(item.getComuna().getRegion().getId())
-                                        .build();
-                    })
-                    .collect(Collectors.toList());
+        return UserMapper.INSTANCE.toSearchResultDtos(input);
+    }
+
+    public static SearchResultDto mapToSearchDto(UserSearchRow item){
+        return UserMapper.INSTANCE.toSearchResultDto(item);
+    }
+
+    public static SearchPageDto mapToSearchPage(List<UserSearchRow> input, int pageSize){
+        boolean hayMas = input.size() > pageSize;
+        List<UserSearchRow> pagina = hayMas ? input.subList(0, pageSize) : input;
+        return SearchPageDto.builder()
+                            .users(pagina)
+                            .nextCursor(hayMas ? encodeCursor(pagina.getLast().rut()) : null)
+                            .build();
+    }
+
+    public static String encodeCursor(String rut){
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(rut.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String decodeCursor(String cursor){
+        if(cursor == null || cursor.isBlank()){
+            return "";
+        }
+        try{
+            return new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+        }catch(IllegalArgumentException e){
+            throw new IllegalArgumentException("Cursor de paginacion invalido", e);
+        }
+    }
+
+    public static boolean isValidCursor(String cursor){
+        try{
+            decodeCursor(cursor);
+            return true;
+        }catch(IllegalArgumentException e){
+            return false;
+        }
     }
 
     public static IllegalArgumentException throwUnexistingUserException(){
@@ -83,11 +97,8 @@ public class Util {
     }
 
 
-    public static int getYears(Date d){
-        return Period.between(
-                    LocalDate.ofInstant(Instant.ofEpochMilli(d.getTime()), ZoneId.systemDefault()),
-                    LocalDate.now(ZoneId.systemDefault()).plusDays(1L))
-                .getYears();
+    public static int getYears(LocalDate d){
+        return Edad.anios(d);
     }
 
     public static String getRamdomRut(){
@@ -0,0 +1,6 @@
+-- Indices para las busquedas de usuarios. El rut va al final de cada indice de usuario para que,
+-- despues de los filtros por igualdad, la condicion de keyset (rut > :cursor) tambien se resuelva en el indice.
+CREATE INDEX idx_usuario_apellido_nombre ON usuario(apellido, nombre, rut);
+CREATE INDEX idx_usuario_nombre ON usuario(nombre, rut);
+CREATE INDEX idx_usuario_comuna ON usuario(comuna, rut);
+CREATE INDEX idx_comuna_region ON comuna(region_id);
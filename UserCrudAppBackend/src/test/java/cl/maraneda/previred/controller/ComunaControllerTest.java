@@ -6,6 +6,7 @@ import cl.maraneda.previred.model.Comuna;
 import cl.maraneda.previred.model.Region;
 import cl.maraneda.previred.repository.ComunaRepository;
 import cl.maraneda.previred.repository.RegionRepository;
+import cl.maraneda.previred.service.ReferenceDataService;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.AfterAll;
@@ -24,9 +25,11 @@ import org.springframework.transaction.annotation.Transactional;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -43,6 +46,7 @@ public class ComunaControllerTest {
     protected transient ObjectMapper objectMapper;
 
     private static final String PATH = "/previred/comuna/porRegion/%s";
+    private static final String BUNDLE_PATH = "/previred/region/bundle";
     private static final String TEST_REGION_ID = "XXIII";
     private static final Region TEST_REGION =
         Region.builder()
@@ -60,12 +64,14 @@ public class ComunaControllerTest {
     @BeforeAll
     public static void prepareTest(
             @Autowired RegionRepository regionRepository,
-            @Autowired ComunaRepository comunaRepository){
+            @Autowired ComunaRepository comunaRepository,
+            @Autowired ReferenceDataService referenceDataService){
         if(!regionRepository.existsById(TEST_REGION.getId())) {
             regionRepository.save(TEST_REGION);
         }
 
         TEST_COMUNAS.stream().filter(c -> !comunaRepository.existsById(c.getId())).forEach(comunaRepository::save);
+        referenceDataService.refresh();
     }
 
     @Test
@@ -90,6 +96,36 @@ public class ComunaControllerTest {
             assertTrue(outputUsers.stream().anyMatch(c -> tc.getId().equals(c.getId()))));
     }
 
+    @Test
+    public void whenSelectingExistingRegionWithMatchingETagShouldObtain304StatusCode() throws Exception{
+        String etag =
+            mockMvc.perform(get(String.format(PATH, TEST_REGION_ID)))
+                   .andExpect(status().isOk())
+                   .andReturn().getResponse().getHeader("ETag");
+        assertNotNull(etag);
+        mockMvc.perform(get(String.format(PATH, TEST_REGION_ID)).header("If-None-Match", etag))
+               .andExpect(status().isNotModified());
+    }
+
+    @Test
+    public void whenGettingBundleShouldReturnRegionsAndComunasInOneResponse() throws Exception{
+        mockMvc.perform(get(BUNDLE_PATH))
+               .andExpect(status().isOk())
+               .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+               .andExpect(jsonPath("$.regiones[?(@.id == '%s')]", TEST_REGION_ID).exists())
+               .andExpect(jsonPath("$.comunas.%s.length()", TEST_REGION_ID).value(TEST_COMUNAS.size()));
+    }
+
+    @Test
+    public void whenGettingRegionOfComunaShouldAnswerFromSnapshot() throws Exception{
+        mockMvc.perform(get("/previred/comuna/regionDeComuna/" + TEST_COMUNAS.getFirst().getId()))
+               .andExpect(status().isOk())
+               .andExpect(content().string(TEST_REGION_ID));
+        mockMvc.perform(get("/previred/comuna/regionDeComuna/99999"))
+               .andExpect(status().isNotFound())
+               .andExpect(content().string("La comuna especificada no existe"));
+    }
+
     @AfterAll
     public static void deleteAllTestData(
             @Autowired RegionRepository regionRepository,
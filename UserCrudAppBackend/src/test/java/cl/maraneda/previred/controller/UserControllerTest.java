@@ -1,17 +1,31 @@
 package cl.maraneda.previred.controller;
 
 import cl.maraneda.previred.ApplicationConfig;
+import cl.maraneda.previred.dto.BatchResultDto;
+import cl.maraneda.previred.dto.ImportResultDto;
+import cl.maraneda.previred.dto.OperationResultDto;
 import cl.maraneda.previred.dto.SearchDto;
+import cl.maraneda.previred.dto.SyncActionDto;
 import cl.maraneda.previred.dto.UserDto;
+import cl.maraneda.previred.metrics.SearchMetrics;
 import cl.maraneda.previred.model.Comuna;
 import cl.maraneda.previred.model.Region;
 import cl.maraneda.previred.repository.ComunaRepository;
 import cl.maraneda.previred.repository.RegionRepository;
+import cl.maraneda.previred.service.ReferenceDataService;
 import cl.maraneda.previred.service.UserService;
 import cl.maraneda.previred.util.CriterioBusquedaUsuario;
+import cl.maraneda.previred.util.EstadoOperacion;
+import cl.maraneda.previred.util.FormatoExportacion;
 import cl.maraneda.previred.util.Util;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -24,16 +38,26 @@ import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -48,6 +72,12 @@ public class UserControllerTest {
     @Autowired
     protected transient ObjectMapper objectMapper;
 
+    @Autowired
+    private transient UserService userService;
+
+    @Autowired
+    private transient MeterRegistry meterRegistry;
+
     private static final String USER_PATH = "/previred/user/";
     private static final String SEARCH_PATH = USER_PATH + "search";
     private static final String TEST_REGION_ID = "XXIII";
@@ -79,6 +109,10 @@ public class UserControllerTest {
             Comuna.builder().id(3).nombre("Putre").region(TEST_REGION).build(),
             Comuna.builder().id(4).nombre("General Lagos").region(TEST_REGION).build());
 
+    /*Solo existen durante la prueba: mover usuarios entre ellas no toca a los de las comunas reales*/
+    private static final Comuna MOVE_ORIGIN = Comuna.builder().id(1201).nombre("Comuna de origen").region(TEST_REGION).build();
+    private static final Comuna MOVE_DESTINATION = Comuna.builder().id(1202).nombre("Comuna de destino").region(TEST_REGION).build();
+
     private static final UserDto TEST_USER =
         UserDto.builder()
                .rut(Util.getRamdomRut())
@@ -88,12 +122,25 @@ public class UserControllerTest {
                .comuna(1)
                .build();
 
+    private static final UserDto SECOND_TEST_USER =
+        UserDto.builder()
+               .rut(Util.getRamdomRut())
+               .nombre("Test").apellido("user")
+               .fechaNacimiento("1990-06-15")
+               .calle("Otra calle de prueba")
+               .comuna(2)
+               .build();
+
     private RequestBuilder getSaveRequestBuilder() throws Exception{
+        return this.getSaveRequestBuilder(TEST_USER);
+    }
+
+    private RequestBuilder getSaveRequestBuilder(UserDto user) throws Exception{
         return put(USER_PATH)
                 .contentType(MediaType.APPLICATION_JSON)
-                .content(objectMapper.writeValueAsString(TEST_USER));
+                .content(objectMapper.writeValueAsString(user));
     }
-    private RequestBuilder getSearchRequestBuilder(SearchDto srch) throws Exception{
+    private MockHttpServletRequestBuilder getSearchRequestBuilder(SearchDto srch) throws Exception{
         return post(SEARCH_PATH)
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(srch));
@@ -109,12 +156,16 @@ public class UserControllerTest {
     @BeforeAll
     public static void prepareTest(
             @Autowired RegionRepository regionRepository,
-            @Autowired ComunaRepository comunaRepository){
+            @Autowired ComunaRepository comunaRepository,
+            @Autowired ReferenceDataService referenceDataService){
         if(!regionRepository.existsById(TEST_REGION.getId())) {
             regionRepository.save(TEST_REGION);
         }
 
         TEST_COMUNAS.stream().filter(c -> !comunaRepository.existsById(c.getId())).forEach(comunaRepository::save);
+        comunaRepository.saveAll(List.of(MOVE_ORIGIN, MOVE_DESTINATION));
+        //Las validaciones leen la foto en memoria, que se pudo armar antes de crear las comunas
+        referenceDataService.refresh();
     }
 
     @Test
@@ -185,6 +236,42 @@ public class UserControllerTest {
         );
     }
 
+    @Test
+    public void whenSearchingWithBinaryAcceptHeaderShouldReturnCborOrSmile() throws Exception{
+        this.whenTryingInsertUserWithCorrectDataShouldObtain201StatusCode();
+        SearchDto byNameFilter = EMPTY_SEARCH_FILTER.clone();
+        byNameFilter.setNombre(TEST_USER.getNombre());
+        byNameFilter.setCriteria(CriterioBusquedaUsuario.POR_NOMBRE.toString());
+        byte[] cbor =
+            mockMvc.perform(this.getSearchRequestBuilder(byNameFilter).accept(MediaType.APPLICATION_CBOR))
+                   .andExpect(status().isOk())
+                   .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                   .andReturn().getResponse().getContentAsByteArray();
+        List<SearchDto> outputUsers = new CBORMapper().readValue(cbor, new TypeReference<>() {});
+        assertFalse(outputUsers.isEmpty());
+        outputUsers.forEach(u -> assertEquals(TEST_USER.getNombre(), u.getNombre()));
+        byte[] smile =
+            mockMvc.perform(this.getSearchRequestBuilder(byNameFilter).accept(UserController.APPLICATION_SMILE_VALUE))
+                   .andExpect(status().isOk())
+                   .andReturn().getResponse().getContentAsByteArray();
+        assertEquals(outputUsers.size(), new SmileMapper().readValue(smile, new TypeReference<List<SearchDto>>() {}).size());
+    }
+
+    @Test
+    public void whenSearchingWithBinaryAcceptHeaderShouldReturnErrorsAsText() throws Exception{
+        SearchDto filtro = EMPTY_SEARCH_FILTER.clone();
+        filtro.setCriteria("NO_EXISTE");
+        mockMvc.perform(this.getSearchRequestBuilder(filtro).accept(MediaType.APPLICATION_CBOR))
+               .andExpect(status().isBadRequest())
+               .andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_PLAIN))
+               .andExpect(content().string("Criterio no reconocido: NO_EXISTE"));
+        filtro.setCriteria(CriterioBusquedaUsuario.POR_NOMBRE.toString());
+        filtro.setNombre("UnexistingName");
+        mockMvc.perform(this.getSearchRequestBuilder(filtro).accept(UserController.APPLICATION_SMILE_VALUE))
+               .andExpect(status().isNotFound())
+               .andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_PLAIN));
+    }
+
     @Test
     public void whenSearchingByNameWithUnexistingNameShouldNotReturnData() throws Exception{
         this.whenTryingInsertUserWithCorrectDataShouldObtain201StatusCode();
@@ -372,6 +459,324 @@ public class UserControllerTest {
         assertEquals(1, outputUsers.size());
     }
 
+    @Test
+    public void whenSearchingWithPageSizeShouldReturnBoundedPagesChainedByCursor() throws Exception{
+        this.whenTryingInsertUserWithCorrectDataShouldObtain201StatusCode();
+        mockMvc.perform(this.getSaveRequestBuilder(SECOND_TEST_USER)).andExpect(status().isCreated());
+        SearchDto filter = EMPTY_SEARCH_FILTER.clone();
+        filter.setNombre(TEST_USER.getNombre());
+        filter.setCriteria(CriterioBusquedaUsuario.POR_NOMBRE.toString());
+        filter.setPageSize(1);
+        MvcResult first = mockMvc.perform(this.getSearchRequestBuilder(filter))
+                                 .andExpect(status().isOk())
+                                 .andExpect(header().exists(UserController.NEXT_CURSOR_HEADER))
+                                 .andReturn();
+        List<SearchDto> firstPage = objectMapper.readValue(first.getResponse().getContentAsString(), new TypeReference<>() {});
+        assertEquals(1, firstPage.size());
+
+        String cursor = first.getResponse().getHeader(UserController.NEXT_CURSOR_HEADER);
+        assertNotNull(cursor);
+        filter.setCursor(cursor);
+        MvcResult second = this.getSuccessfulSearchResult(filter);
+        List<SearchDto> secondPage = objectMapper.readValue(second.getResponse().getContentAsString(), new TypeReference<>() {});
+        assertEquals(1, secondPage.size());
+        assertNotEquals(firstPage.getFirst().getRut(), secondPage.getFirst().getRut());
+    }
+
+    @Test
+    public void whenSearchingByCombinedFiltersWithAndShouldReturnOnlyUsersMatchingAll() throws Exception{
+        this.whenTryingInsertUserWithCorrectDataShouldObtain201StatusCode();
+        mockMvc.perform(this.getSaveRequestBuilder(SECOND_TEST_USER)).andExpect(status().isCreated());
+        SearchDto filter = EMPTY_SEARCH_FILTER.clone();
+        filter.setNombre(TEST_USER.getNombre());
+        filter.setApellido(TEST_USER.getApellido());
+        filter.setComuna(TEST_USER.getComuna());
+        filter.setCriteria(CriterioBusquedaUsuario.POR_FILTROS.toString());
+        MvcResult res = this.getSuccessfulSearchResult(filter);
+        List<SearchDto> outputUsers = objectMapper.readValue(res.getResponse().getContentAsString(), new TypeReference<>() {});
+        assertFalse(outputUsers.isEmpty());
+        outputUsers.forEach(u -> {
+            assertEquals(TEST_USER.getNombre(), u.getNombre());
+            assertEquals(TEST_USER.getApellido(), u.getApellido());
+            assertEquals(TEST_USER.getComuna(), u.getComuna());
+        });
+    }
+
+    @Test
+    public void whenSearchingByCombinedFiltersWithOrShouldReturnUsersMatchingAny() throws Exception{
+        this.whenTryingInsertUserWithCorrectDataShouldObtain201StatusCode();
+        SearchDto filter = EMPTY_SEARCH_FILTER.clone();
+        filter.setNombre("UnexistingName");
+        filter.setRut(TEST_USER.getRut());
+        filter.setOperator("OR");
+        filter.setCriteria(CriterioBusquedaUsuario.POR_FILTROS.toString());
+        MvcResult res = this.getSuccessfulSearchResult(filter);
+        List<SearchDto> outputUsers = objectMapper.readValue(res.getResponse().getContentAsString(), new TypeReference<>() {});
+        assertEquals(1, outputUsers.size());
+        assertEquals(TEST_USER.getRut(), outputUsers.getFirst().getRut());
+    }
+
+    @Test
+    public void whenSearchingByCombinedFiltersWithoutFiltersShouldObtain400StatusCode() throws Exception{
+        SearchDto filter = EMPTY_SEARCH_FILTER.clone();
+        filter.setCriteria(CriterioBusquedaUsuario.POR_FILTROS.toString());
+        String res =
+            mockMvc.perform(this.getSearchRequestBuilder(filter))
+                   .andExpect(status().isBadRequest())
+                   .andReturn().getResponse().getContentAsString();
+        assertEquals("Debe ingresar al menos un filtro para buscar usuarios por ese criterio", res);
+    }
+
+    @Test
+    public void whenImportingUsersInBulkShouldObtainOneResultPerUser() throws Exception{
+        mockMvc.perform(this.getSaveRequestBuilder(SECOND_TEST_USER)).andExpect(status().isCreated());
+        UserDto nuevo = TEST_USER.clone();
+        nuevo.setRut(Util.getRamdomRut());
+        UserDto rutInvalido = TEST_USER.clone();
+        rutInvalido.setRut("1-1");
+        UserDto sinComuna = TEST_USER.clone();
+        sinComuna.setRut(Util.getRamdomRut());
+        sinComuna.setComuna(999_999);
+        List<UserDto> carga = List.of(nuevo, nuevo, rutInvalido, sinComuna, SECOND_TEST_USER);
+        String res =
+            mockMvc.perform(post(USER_PATH + "bulk")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(carga)))
+                   .andExpect(status().isOk())
+                   .andReturn().getResponse().getContentAsString();
+        ImportResultDto resultado = objectMapper.readValue(res, ImportResultDto.class);
+        assertEquals(5, resultado.getProcesados());
+        assertEquals(1, resultado.getCreados());
+        assertEquals(4, resultado.getRechazados());
+        assertEquals(EstadoOperacion.CREADO, resultado.getResultados().get(0).getEstado());
+        assertEquals("El usuario viene repetido en la carga", resultado.getResultados().get(1).getMensaje());
+        assertEquals("Formato de rut invalido o Rut no concuerda con digito verificador",
+                     resultado.getResultados().get(2).getMensaje());
+        assertEquals("La comuna especificada no existe", resultado.getResultados().get(3).getMensaje());
+        assertEquals("El usuario ya existe", resultado.getResultados().get(4).getMensaje());
+    }
+
+    @Test
+    public void whenImportingMalformedJsonShouldKeepUsersReadBeforeTheError() throws Exception{
+        UserDto nuevo = TEST_USER.clone();
+        nuevo.setRut(Util.getRamdomRut());
+        String carga = "[" + objectMapper.writeValueAsString(nuevo) + ",\n{\"rut\": }]";
+        String res =
+            mockMvc.perform(post(USER_PATH + "bulk")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(carga))
+                   .andExpect(status().isBadRequest())
+                   .andReturn().getResponse().getContentAsString();
+        ImportResultDto resultado = objectMapper.readValue(res, ImportResultDto.class);
+        assertEquals(1, resultado.getProcesados());
+        assertEquals(1, resultado.getCreados());
+        assertEquals(EstadoOperacion.CREADO, resultado.getResultados().get(0).getEstado());
+        assertEquals("JSON mal formado en el elemento 1", resultado.getError());
+        assertEquals(2, resultado.getLineaError());
+        assertNotNull(resultado.getColumnaError());
+    }
+
+    @Test
+    public void whenImportingSomethingOtherThanAnArrayShouldObtain400StatusCode() throws Exception{
+        mockMvc.perform(post(USER_PATH + "bulk")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(TEST_USER)))
+               .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void whenExportingUsersShouldWriteOneRecordPerUser() throws Exception{
+        this.whenTryingInsertUserWithCorrectDataShouldObtain201StatusCode();
+        mockMvc.perform(this.getSaveRequestBuilder(SECOND_TEST_USER)).andExpect(status().isCreated());
+
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        userService.export(FormatoExportacion.CSV, csv);
+        List<String> lineas = csv.toString(StandardCharsets.UTF_8).lines().toList();
+        assertEquals("rut,nombre,apellido,fechaNacimiento,calle,comuna,nombreComuna,region", lineas.getFirst());
+        assertTrue(lineas.stream().anyMatch(l -> l.startsWith(TEST_USER.getRut() + ",Test,user,2000-01-01,Calle de prueba,1,Arica,")));
+
+        ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+        userService.export(FormatoExportacion.NDJSON, ndjson);
+        List<JsonNode> registros = ndjson.toString(StandardCharsets.UTF_8)
+                                         .lines()
+                                         .map(l -> {
+                                             try{
+                                                 return objectMapper.readTree(l);
+                                             }catch(Exception e){
+                                                 throw new IllegalStateException(e);
+                                             }
+                                         })
+                                         .toList();
+        assertEquals(lineas.size() - 1, registros.size());
+        assertTrue(registros.stream().anyMatch(r ->
+            SECOND_TEST_USER.getRut().equals(r.get("rut").asText()) &&
+            "1990-06-15".equals(r.get("fechaNacimiento").asText()) &&
+            r.get("comuna").asInt() == 2));
+    }
+
+    @Test
+    public void whenExportingWithUnknownFormatShouldObtain400StatusCode() throws Exception{
+        MvcResult res = mockMvc.perform(get(USER_PATH + "export").param("format", "xml"))
+                               .andExpect(request().asyncStarted())
+                               .andReturn();
+        String msg = mockMvc.perform(asyncDispatch(res))
+                            .andExpect(status().isBadRequest())
+                            .andReturn().getResponse().getContentAsString();
+        assertEquals("Formato de exportacion no reconocido: xml", msg);
+    }
+
+    @Test
+    public void whenSearchingThenMetricsShouldBeTaggedByCriterion() throws Exception{
+        this.whenTryingInsertUserWithCorrectDataShouldObtain201StatusCode();
+        SearchDto byNameFilter = EMPTY_SEARCH_FILTER.clone();
+        byNameFilter.setNombre(TEST_USER.getNombre());
+        byNameFilter.setCriteria(CriterioBusquedaUsuario.POR_NOMBRE.toString());
+        this.getSuccessfulSearchResult(byNameFilter);
+
+        Timer latencia = meterRegistry.find(SearchMetrics.LATENCIA).tags("criterio", "POR_NOMBRE", "status", "200").timer();
+        assertNotNull(latencia);
+        assertTrue(latencia.count() >= 1);
+        DistributionSummary sentencias = meterRegistry.find(SearchMetrics.SENTENCIAS).tag("criterio", "POR_NOMBRE").summary();
+        assertNotNull(sentencias);
+        assertTrue(sentencias.max() >= 1);
+        DistributionSummary filas = meterRegistry.find(SearchMetrics.FILAS).tag("criterio", "POR_NOMBRE").summary();
+        assertNotNull(filas);
+        assertTrue(filas.totalAmount() >= 1);
+        assertNotNull(meterRegistry.find(SearchMetrics.MAPEO).timer());
+    }
+
+    @Test
+    public void whenDeletingUsersInBatchShouldObtainOneResultPerRut() throws Exception{
+        this.whenTryingInsertUserWithCorrectDataShouldObtain201StatusCode();
+        List<String> ruts = List.of(TEST_USER.getRut(), TEST_USER.getRut(), "1-1", "11111111-1");
+        String res =
+            mockMvc.perform(post(USER_PATH + "batch/delete")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(ruts)))
+                   .andExpect(status().isOk())
+                   .andReturn().getResponse().getContentAsString();
+        BatchResultDto resultado = objectMapper.readValue(res, BatchResultDto.class);
+        assertEquals(1, resultado.getExitosos());
+        assertEquals(EstadoOperacion.ELIMINADO, resultado.getResultados().get(0).getEstado());
+        assertEquals("El rut viene repetido en la lista", resultado.getResultados().get(1).getMensaje());
+        assertEquals("Formato de rut invalido o Rut no concuerda con digito verificador",
+                     resultado.getResultados().get(2).getMensaje());
+        assertEquals("El usuario no existe", resultado.getResultados().get(3).getMensaje());
+        mockMvc.perform(delete(USER_PATH + TEST_USER.getRut())).andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void whenUpdatingUsersInBatchShouldOnlyChangeGivenFields() throws Exception{
+        this.whenTryingInsertUserWithCorrectDataShouldObtain201StatusCode();
+        List<UserDto> cambios = List.of(
+            UserDto.builder().rut(TEST_USER.getRut()).comuna(3).build(),
+            UserDto.builder().rut("11111111-1").calle("Sin calle").build(),
+            UserDto.builder().rut(SECOND_TEST_USER.getRut()).build());
+        String res =
+            mockMvc.perform(put(USER_PATH + "batch")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(cambios)))
+                   .andExpect(status().isOk())
+                   .andReturn().getResponse().getContentAsString();
+        BatchResultDto resultado = objectMapper.readValue(res, BatchResultDto.class);
+        assertEquals(EstadoOperacion.ACTUALIZADO, resultado.getResultados().get(0).getEstado());
+        assertEquals("El usuario no existe", resultado.getResultados().get(1).getMensaje());
+        assertEquals("Debe indicar al menos un campo a modificar", resultado.getResultados().get(2).getMensaje());
+
+        SearchDto byRut = EMPTY_SEARCH_FILTER.clone();
+        byRut.setRut(TEST_USER.getRut());
+        byRut.setCriteria(CriterioBusquedaUsuario.POR_RUT.toString());
+        List<SearchDto> encontrados =
+            objectMapper.readValue(this.getSuccessfulSearchResult(byRut).getResponse().getContentAsString(),
+                                   new TypeReference<>() {});
+        assertEquals(3, encontrados.getFirst().getComuna());
+        assertEquals(TEST_USER.getCalle(), encontrados.getFirst().getCalle());
+    }
+
+    @Test
+    public void whenSyncingActionQueueShouldApplyOnlyTheFinalStatePerRut() throws Exception{
+        List<SyncActionDto> cola = List.of(
+            SyncActionDto.builder().type("create").payload(TEST_USER).timestamp(1L).build(),
+            SyncActionDto.builder().type("update").id(TEST_USER.getRut())
+                         .payload(UserDto.builder().calle("Calle nueva").build()).timestamp(2L).build(),
+            SyncActionDto.builder().type("create").payload(SECOND_TEST_USER).timestamp(3L).build(),
+            SyncActionDto.builder().type("update").id(SECOND_TEST_USER.getRut())
+                         .payload(UserDto.builder().nombre("Otro").build()).timestamp(4L).build(),
+            SyncActionDto.builder().type("delete").id(SECOND_TEST_USER.getRut()).timestamp(5L).build(),
+            SyncActionDto.builder().type("delete").id("11111111-1").timestamp(6L).build(),
+            SyncActionDto.builder().type("create").payload(TEST_USER).timestamp(7L).build());
+        String res =
+            mockMvc.perform(post(USER_PATH + "sync")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(cola)))
+                   .andExpect(status().isOk())
+                   .andReturn().getResponse().getContentAsString();
+        BatchResultDto resultado = objectMapper.readValue(res, BatchResultDto.class);
+        assertEquals(List.of(EstadoOperacion.CREADO, EstadoOperacion.ACTUALIZADO, EstadoOperacion.CREADO,
+                             EstadoOperacion.ACTUALIZADO, EstadoOperacion.ELIMINADO, EstadoOperacion.RECHAZADO,
+                             EstadoOperacion.RECHAZADO),
+                     resultado.getResultados().stream().map(OperationResultDto::getEstado).toList());
+        assertEquals("El usuario no existe", resultado.getResultados().get(5).getMensaje());
+        assertEquals("El usuario ya existe", resultado.getResultados().get(6).getMensaje());
+
+        assertEquals("Calle nueva", userService.findById(TEST_USER.getRut()).getCalle());
+        SearchDto byRut = EMPTY_SEARCH_FILTER.clone();
+        byRut.setRut(SECOND_TEST_USER.getRut());
+        byRut.setCriteria(CriterioBusquedaUsuario.POR_RUT.toString());
+        mockMvc.perform(this.getSearchRequestBuilder(byRut)).andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void whenMovingUsersBetweenComunasShouldObtain200StatusCode() throws Exception{
+        UserDto usuario = SECOND_TEST_USER.clone();
+        usuario.setRut(Util.getRamdomRut());
+        usuario.setComuna(MOVE_ORIGIN.getId());
+        mockMvc.perform(this.getSaveRequestBuilder(usuario)).andExpect(status().isCreated());
+        String path = USER_PATH + "porComuna/" + MOVE_ORIGIN.getId() + "/";
+        String res = mockMvc.perform(put(path + MOVE_DESTINATION.getId()))
+                            .andExpect(status().isOk())
+                            .andReturn().getResponse().getContentAsString();
+        assertEquals("Se movieron 1 usuarios a la comuna " + MOVE_DESTINATION.getId(), res);
+        mockMvc.perform(put(path + MOVE_ORIGIN.getId())).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void whenAutocompletingUnknownFieldShouldObtain400StatusCode() throws Exception{
+        String resp =
+            mockMvc.perform(get(USER_PATH + "autocomplete").param("campo", "calle").param("prefijo", "Ca"))
+                   .andExpect(status().isBadRequest())
+                   .andReturn().getResponse().getContentAsString();
+        assertEquals("Campo de autocompletado no reconocido: calle", resp);
+        mockMvc.perform(get(USER_PATH + "autocomplete").param("campo", "nombre").param("prefijo", ""))
+               .andExpect(status().isOk())
+               .andExpect(content().json("[]"));
+    }
+
+    @Test
+    public void whenCountingWithInvalidAgeBucketsShouldObtain400StatusCode() throws Exception{
+        String resp =
+            mockMvc.perform(get(USER_PATH + "conteo/porRegion").param("tramos", "30,18"))
+                   .andExpect(status().isBadRequest())
+                   .andReturn().getResponse().getContentAsString();
+        assertEquals("Tramos de edad invalidos: 30,18", resp);
+        resp = mockMvc.perform(get(USER_PATH + "conteo/porComuna").param("region", "RM").param("tramos", "18,60"))
+                      .andExpect(status().isOk())
+                      .andReturn().getResponse().getContentAsString();
+        assertTrue(resp.contains("\"0-17\"") && resp.contains("\"18-59\"") && resp.contains("\"60+\""));
+    }
+
+    @Test
+    public void whenSearchingWithInvalidCursorShouldObtain400StatusCode() throws Exception{
+        SearchDto filter = EMPTY_SEARCH_FILTER.clone();
+        filter.setCriteria(CriterioBusquedaUsuario.TODOS.toString());
+        filter.setCursor("%%%");
+        String res =
+            mockMvc.perform(this.getSearchRequestBuilder(filter))
+                   .andExpect(status().isBadRequest())
+                   .andReturn().getResponse().getContentAsString();
+        assertEquals("Cursor de paginacion invalido", res);
+    }
+
     @Test
     public void whenDeletingExistingUserShouldObtain200StatusCode() throws Exception{
         this.whenTryingInsertUserWithCorrectDataShouldObtain201StatusCode();
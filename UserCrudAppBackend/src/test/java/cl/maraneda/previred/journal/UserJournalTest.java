@@ -0,0 +1,179 @@
+package cl.maraneda.previred.journal;
+
+import cl.maraneda.previred.dto.UserDto;
+import cl.maraneda.previred.model.Comuna;
+import cl.maraneda.previred.model.User;
+import cl.maraneda.previred.repository.ComunaRepository;
+import cl.maraneda.previred.repository.UserRepository;
+import cl.maraneda.previred.service.UserService;
+import cl.maraneda.previred.util.Util;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public class UserJournalTest {
+    @TempDir
+    static Path directorio;
+
+    @Autowired
+    private transient UserService userService;
+
+    @Autowired
+    private transient UserRepository userRepository;
+
+    @Autowired
+    private transient ComunaRepository comunaRepository;
+
+    @Autowired
+    private transient TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private transient ObjectMapper objectMapper;
+
+    @Autowired
+    private transient ApplicationEventPublisher eventPublisher;
+
+    @DynamicPropertySource
+    static void writeBehind(DynamicPropertyRegistry registry){
+        registry.add("previred.write-behind.enabled", () -> "true");
+        registry.add("previred.write-behind.dir", () -> directorio.resolve("app").toString());
+    }
+
+    @AfterEach
+    public void deleteTestUsers(){
+        userService.deleteTestUsers();
+    }
+
+    private static UserDto testUser(String rut){
+        return UserDto.builder()
+                      .rut(rut)
+                      .nombre("Test").apellido("Diario")
+                      .fechaNacimiento("1990-01-01")
+                      .calle("Calle de prueba")
+                      .comuna(1)
+                      .build();
+    }
+
+    @Test
+    public void whenWritingUsersShouldReadThemBackBeforeTheyAreApplied(){
+        String rut = Util.getRamdomRut();
+        assertTrue(userService.isWriteBehind());
+        assertTrue(userService.save(testUser(rut)));
+        assertThrows(IllegalArgumentException.class, () -> userService.save(testUser(rut)));
+        assertEquals(rut, userService.findById(rut).getRut());
+
+        assertTrue(userService.delete(rut));
+        assertThrows(IllegalArgumentException.class, () -> userService.delete(rut));
+        assertThrows(IllegalArgumentException.class, () -> userService.findById(rut));
+    }
+
+    @Test
+    public void whenStartingShouldReplayJournalAfterCheckpoint() throws Exception{
+        String rut = Util.getRamdomRut();
+        Path otro = Files.createDirectories(directorio.resolve("caida"));
+        User user = Util.mapToUser(testUser(rut), Comuna.builder().id(1).build());
+        User cambiado = User.builder().rut(rut).nombre("Test").apellido("Diario").calle("Calle nueva")
+                            .fechaNacimiento(LocalDate.of(1990, 1, 1)).comuna(user.getComuna()).build();
+        /*La ultima linea quedo a medio escribir: nunca se confirmo y se debe descartar*/
+        String lineas = objectMapper.writeValueAsString(UserMutation.of(1, TipoMutacion.GUARDAR, user)) + "\n" +
+                        objectMapper.writeValueAsString(UserMutation.of(2, TipoMutacion.ACTUALIZAR, cambiado)) + "\n" +
+                        "{\"secuencia\":3,\"tipo\":\"ELIMI";
+        Files.writeString(otro.resolve("usuarios.journal"), lineas, StandardCharsets.UTF_8);
+
+        UserJournal journal = new UserJournal(userRepository, comunaRepository, transactionTemplate, objectMapper,
+                                              eventPublisher, otro, 500, 1024, 1000, 5);
+        try{
+            journal.start();
+        }finally{
+            journal.stop();
+        }
+        assertEquals("Calle nueva", userService.findById(rut).getCalle());
+        assertEquals("2", Files.readString(otro.resolve("usuarios.checkpoint"), StandardCharsets.US_ASCII));
+        assertFalse(Files.readString(otro.resolve("usuarios.journal")).contains("ELIMI"));
+    }
+
+    @Test
+    public void whenJournalHasDamagedLineFollowedByConfirmedOnesShouldRefuseToStart() throws Exception{
+        Path otro = Files.createDirectories(directorio.resolve("danado"));
+        User user = Util.mapToUser(testUser(Util.getRamdomRut()), Comuna.builder().id(1).build());
+        /*Una escritura que fallo a medias y que no se descarto: lo que viene despues si se confirmo*/
+        String lineas = "{\"secuencia\":1,\"tipo\":\"GUAR\n" +
+                        objectMapper.writeValueAsString(UserMutation.of(2, TipoMutacion.GUARDAR, user)) + "\n";
+        Files.writeString(otro.resolve("usuarios.journal"), lineas, StandardCharsets.UTF_8);
+
+        UserJournal journal = new UserJournal(userRepository, comunaRepository, transactionTemplate, objectMapper,
+                                              eventPublisher, otro, 500, 1024, 1000, 5);
+        try{
+            assertThrows(IllegalStateException.class, journal::start);
+        }finally{
+            journal.stop();
+        }
+        assertTrue(Files.readString(otro.resolve("usuarios.journal")).contains(user.getRut()));
+    }
+
+    @Test
+    public void whenMutationFailsAfterRetriesShouldDeadLetterItAndApplyTheRest() throws Exception{
+        Path otro = Files.createDirectories(directorio.resolve("descartadas"));
+        User valido = Util.mapToUser(testUser(Util.getRamdomRut()), Comuna.builder().id(1).build());
+        User invalido = Util.mapToUser(testUser(Util.getRamdomRut()), Comuna.builder().id(1).build());
+        /*La columna nombre es VARCHAR(20): la base de datos rechaza esta mutacion cada vez que se intenta*/
+        invalido.setNombre("Test con un nombre demasiado largo");
+
+        UserJournal journal = new UserJournal(userRepository, comunaRepository, transactionTemplate, objectMapper,
+                                              eventPublisher, otro, 500, 1024, 30_000, 1);
+        try{
+            journal.start();
+            journal.registrar(TipoMutacion.GUARDAR, valido);
+            journal.registrar(TipoMutacion.GUARDAR, invalido);
+            journal.esperarAplicadas();
+        }finally{
+            journal.stop();
+        }
+        assertTrue(userRepository.existsById(valido.getRut()));
+        assertFalse(userRepository.existsById(invalido.getRut()));
+        String descartadas = Files.readString(otro.resolve("usuarios.deadletter"));
+        assertTrue(descartadas.contains(invalido.getRut()));
+        assertFalse(descartadas.contains(valido.getRut()));
+    }
+
+    @Test
+    public void whenComunaNoLongerExistsAtApplyTimeShouldDeadLetterMutation() throws Exception{
+        Path otro = Files.createDirectories(directorio.resolve("sin-comuna"));
+        /*Se valido contra la foto de referencia, pero su region se elimino antes de aplicarla*/
+        User user = Util.mapToUser(testUser(Util.getRamdomRut()), Comuna.builder().id(99_999).build());
+
+        UserJournal journal = new UserJournal(userRepository, comunaRepository, transactionTemplate, objectMapper,
+                                              eventPublisher, otro, 500, 1024, 30_000, 5);
+        try{
+            journal.start();
+            journal.registrar(TipoMutacion.GUARDAR, user);
+            journal.esperarAplicadas();
+        }finally{
+            journal.stop();
+        }
+        assertFalse(userRepository.existsById(user.getRut()));
+        String descartadas = Files.readString(otro.resolve("usuarios.deadletter"));
+        assertTrue(descartadas.contains(user.getRut()));
+        assertTrue(descartadas.contains("La comuna no existia al aplicar la mutacion"));
+    }
+}
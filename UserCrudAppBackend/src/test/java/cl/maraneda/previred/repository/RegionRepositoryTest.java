@@ -0,0 +1,112 @@
+package cl.maraneda.previred.repository;
+
+import cl.maraneda.previred.model.Comuna;
+import cl.maraneda.previred.model.Region;
+import cl.maraneda.previred.model.User;
+import cl.maraneda.previred.service.ReferenceDataService;
+import cl.maraneda.previred.util.RUT;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.sql.Date;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Cuantas entidades carga Hibernate en cada endpoint de regiones y comunas. Las comunas de una region
+ * y la region de una comuna solo se cargan si el caso de uso las pide.
+ * <p>
+ * Sin @Transactional: la eliminacion de la region se confirma, y con eso se vuelve a armar la foto en memoria.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+public class RegionRepositoryTest {
+    private static final String TEST_REGION_ID = "XXIV";
+
+    @Autowired
+    private transient MockMvc mockMvc;
+
+    @Autowired
+    private transient RegionRepository regionRepository;
+
+    @Autowired
+    private transient ReferenceDataService referenceDataService;
+
+    @Autowired
+    private transient JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private transient EntityManagerFactory entityManagerFactory;
+
+    private transient Statistics statistics;
+
+    @BeforeEach
+    public void prepareStatistics(){
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @AfterEach
+    public void deleteTestRegion(){
+        jdbcTemplate.update("DELETE FROM usuario WHERE comuna IN (1101, 1102)");
+        jdbcTemplate.update("DELETE FROM comuna WHERE region_id = ?", TEST_REGION_ID);
+        if(jdbcTemplate.update("DELETE FROM region WHERE id = ?", TEST_REGION_ID) > 0){
+            referenceDataService.refresh();
+        }
+    }
+
+    private long cargadas(Class<?> entidad){
+        return statistics.getEntityStatistics(entidad.getName()).getLoadCount();
+    }
+
+    @Test
+    public void whenReadingReferenceEndpointsThenNothingShouldBeLoaded() throws Exception{
+        referenceDataService.snapshot();
+        statistics.clear();
+        mockMvc.perform(get("/previred/region/")).andExpect(status().isOk());
+        mockMvc.perform(get("/previred/region/bundle")).andExpect(status().isOk());
+        mockMvc.perform(get("/previred/comuna/porRegion/RM")).andExpect(status().isOk());
+        mockMvc.perform(get("/previred/comuna/regionDeComuna/1")).andExpect(status().isOk());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void whenDeletingRegionThenOnlyRemainingRegionsShouldBeLoaded() throws Exception{
+        jdbcTemplate.update("INSERT INTO region(id, nombre, orden) VALUES (?, ?, ?)", TEST_REGION_ID, "Region de prueba", 99);
+        jdbcTemplate.update("INSERT INTO comuna(id, nombre, region_id) VALUES (?, ?, ?)", 1101, "Comuna de prueba", TEST_REGION_ID);
+        jdbcTemplate.update("INSERT INTO comuna(id, nombre, region_id) VALUES (?, ?, ?)", 1102, "Otra comuna de prueba", TEST_REGION_ID);
+        for(int i = 0; i < 10; i++){
+            int cuerpo = 7_100_000 + i;
+            jdbcTemplate.update(
+                "INSERT INTO usuario(rut, nombre, apellido, fecha_nacimiento, calle, comuna) VALUES (?, ?, ?, ?, ?, ?)",
+                cuerpo + "-" + RUT.getDigito(cuerpo), "Test", "Region", Date.valueOf(LocalDate.of(1980, 1, 1)),
+                "Calle " + i, 1101 + i % 2);
+        }
+        referenceDataService.refresh();
+        long regiones = regionRepository.count();
+        statistics.clear();
+        mockMvc.perform(delete("/previred/region/" + TEST_REGION_ID))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$.usuariosEliminados").value(10))
+               .andExpect(jsonPath("$.comunasEliminadas").value(2));
+        /*El borrado es por conjunto; lo unico que se carga es la foto que se arma al confirmar, sin comunas*/
+        assertEquals(regiones - 1, cargadas(Region.class));
+        assertEquals(0, cargadas(Comuna.class));
+        assertEquals(0, cargadas(User.class));
+        mockMvc.perform(get("/previred/comuna/regionDeComuna/1101")).andExpect(status().isNotFound());
+    }
+}
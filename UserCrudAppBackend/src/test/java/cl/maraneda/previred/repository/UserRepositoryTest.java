@@ -0,0 +1,164 @@
+package cl.maraneda.previred.repository;
+
+import cl.maraneda.previred.dto.SearchPageDto;
+import cl.maraneda.previred.dto.UserDto;
+import cl.maraneda.previred.service.ReferenceDataService;
+import cl.maraneda.previred.service.UserService;
+import cl.maraneda.previred.util.FiltroBusqueda;
+import cl.maraneda.previred.util.RUT;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+    "spring.jpa.properties.hibernate.generate_statistics=true",
+    "spring.jpa.properties.hibernate.session_factory.statement_inspector=" +
+        "cl.maraneda.previred.repository.UserRepositoryTest$SentenciasCapturadas"
+})
+@Transactional
+public class UserRepositoryTest {
+    private static final int[] COMUNAS = {1, 50, 100, 200, 300};
+
+    /*Guarda el SQL que Hibernate le entrega al driver, para pedirle a H2 el plan de esa misma sentencia*/
+    public static class SentenciasCapturadas implements StatementInspector {
+        private static final List<String> SENTENCIAS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql){
+            SENTENCIAS.add(sql);
+            return sql;
+        }
+    }
+
+    @Autowired
+    private transient UserService userService;
+
+    @Autowired
+    private transient JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private transient ReferenceDataService referenceDataService;
+
+    @Autowired
+    private transient EntityManagerFactory entityManagerFactory;
+
+    private transient Statistics statistics;
+
+    @BeforeEach
+    public void prepareStatistics(){
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    private void insertUsers(int desde, int cantidad){
+        for(int i = desde; i < desde + cantidad; i++){
+            int cuerpo = 7_000_000 + i;
+            jdbcTemplate.update(
+                "INSERT INTO usuario(rut, nombre, apellido, fecha_nacimiento, calle, comuna) VALUES (?, ?, ?, ?, ?, ?)",
+                cuerpo + "-" + RUT.getDigito(cuerpo), "Test", "Statements",
+                Date.valueOf(LocalDate.of(1980, 1, 1).plusDays(i)), "Calle " + i, COMUNAS[i % COMUNAS.length]);
+        }
+    }
+
+    private long statementsForSearch(FiltroBusqueda filtro){
+        statistics.clear();
+        SearchPageDto page = userService.search(filtro, null, 1000);
+        page.getUsers().forEach(u -> assertEquals(u.region() == null, u.nombreComuna() == null));
+        assertEquals(0, statistics.getEntityLoadCount());
+        return statistics.getPrepareStatementCount();
+    }
+
+    /**
+     * El plan de H2 para el SQL que Hibernate genera a partir de UserSearchPlan (ver V006__create_indexes_usuario.sql)
+     *
+     * @param valores Los valores de los campos del filtro, en el orden de UserSearchPlan.Campo. Antes va el
+     *                cursor y despues el limite de filas, que se completan aqui.
+     */
+    private String explainSearch(FiltroBusqueda filtro, Object... valores){
+        SentenciasCapturadas.SENTENCIAS.clear();
+        userService.search(filtro, null, 1000);
+        String sql = SentenciasCapturadas.SENTENCIAS.stream()
+                                                    .filter(s -> s.toLowerCase(Locale.ROOT).contains("from usuario"))
+                                                    .reduce((primera, ultima) -> ultima)
+                                                    .orElseThrow();
+        Object[] parametros = new Object[(int) sql.chars().filter(c -> c == '?').count()];
+        Arrays.fill(parametros, 1001);
+        parametros[0] = "";
+        System.arraycopy(valores, 0, parametros, 1, valores.length);
+        return jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class, parametros).toUpperCase(Locale.ROOT);
+    }
+
+    private static void assertUsesIndex(String plan, String indice){
+        assertTrue(plan.contains(indice), () -> "Se esperaba " + indice + " en el plan:\n" + plan);
+    }
+
+    @Test
+    public void whenSearchingByIndexedColumnsThenPlanShouldUseSecondaryIndexes(){
+        insertUsers(0, 5_000);
+        assertUsesIndex(explainSearch(FiltroBusqueda.builder().nombre("Test").apellido("Statements").build(), "Test", "Statements"),
+                        "IDX_USUARIO_APELLIDO_NOMBRE");
+        assertUsesIndex(explainSearch(FiltroBusqueda.builder().apellido("Statements").build(), "Statements"),
+                        "IDX_USUARIO_APELLIDO_NOMBRE");
+        assertUsesIndex(explainSearch(FiltroBusqueda.builder().nombre("Test").build(), "Test"), "IDX_USUARIO_NOMBRE");
+        assertUsesIndex(explainSearch(FiltroBusqueda.builder().comuna(50).build(), 50), "IDX_USUARIO_COMUNA");
+        String porRegion = explainSearch(FiltroBusqueda.builder().region("RM").build(), "RM");
+        assertUsesIndex(porRegion, "IDX_USUARIO_COMUNA");
+        assertUsesIndex(porRegion, "IDX_COMUNA_REGION");
+    }
+
+    @Test
+    public void whenUpdatingOrDeletingThenOnlyOneStatementShouldBeExecuted(){
+        insertUsers(0, 1);
+        String rut = 7_000_000 + "-" + RUT.getDigito(7_000_000);
+        UserDto cambios = UserDto.builder()
+                                 .rut(rut)
+                                 .nombre("Test").apellido("Actualizado")
+                                 .fechaNacimiento("1985-05-05").calle("Otra calle").comuna(COMUNAS[1])
+                                 .build();
+        referenceDataService.snapshot();
+        statistics.clear();
+        assertTrue(userService.update(cambios));
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals("Actualizado", jdbcTemplate.queryForObject("SELECT apellido FROM usuario WHERE rut = ?", String.class, rut));
+
+        statistics.clear();
+        assertTrue(userService.delete(rut));
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM usuario WHERE rut = ?", Integer.class, rut));
+    }
+
+    @Test
+    public void whenSearchingThenStatementCountShouldNotDependOnResultSize(){
+        FiltroBusqueda porApellido = FiltroBusqueda.builder().apellido("Statements").build();
+        insertUsers(0, 1);
+        long conUnUsuario = statementsForSearch(porApellido);
+        insertUsers(1, 40);
+        long conVariosUsuarios = statementsForSearch(porApellido);
+        assertEquals(1, conUnUsuario);
+        assertEquals(conUnUsuario, conVariosUsuarios);
+    }
+
+    @Test
+    public void whenSearchingByRegionThenOnlyOneStatementShouldBeExecuted(){
+        insertUsers(0, 25);
+        assertEquals(1, statementsForSearch(FiltroBusqueda.builder().region("RM").build()));
+        assertEquals(1, statementsForSearch(FiltroBusqueda.TODOS));
+    }
+}
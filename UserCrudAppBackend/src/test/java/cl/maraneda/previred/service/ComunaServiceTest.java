@@ -1,16 +1,18 @@
 package cl.maraneda.previred.service;
 
 import cl.maraneda.previred.dto.ComunaDto;
+import cl.maraneda.previred.mapper.ReferenceMapper;
 import cl.maraneda.previred.model.Comuna;
 import cl.maraneda.previred.model.Region;
 import cl.maraneda.previred.repository.ComunaRepository;
 import cl.maraneda.previred.repository.RegionRepository;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mapstruct.factory.Mappers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.modelmapper.ModelMapper;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -19,8 +21,6 @@ import java.util.stream.IntStream;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -34,8 +34,8 @@ public class ComunaServiceTest {
     @Mock
     public transient RegionRepository regionRepository;
 
-    @Mock
-    public transient ModelMapper mapper;
+    @Spy
+    public transient ReferenceMapper mapper = Mappers.getMapper(ReferenceMapper.class);
 
     @Test
     void whenGettingValidRegionIDThenShouldReturnAssociatedCommunes() {
@@ -59,15 +59,6 @@ public class ComunaServiceTest {
         // Key: Mock repo's findByRegion to return entities (List<Comuna>)
         when(comunaRepository.findByRegion(reg.getId())).thenReturn(comunas);
 
-        // Mock ModelMapper to return DTOs from entities
-        when(mapper.map(any(Comuna.class), eq(ComunaDto.class))).thenAnswer(invocation -> {
-            Comuna c = invocation.getArgument(0);
-            return ComunaDto.builder()
-                    .id(c.getId())
-                    .nombre(c.getNombre())
-                    .build();
-        });
-
         // Act: Save (mocks hit)
         Region savedReg = regionRepository.save(reg);
         assertEquals(reg.getId(), savedReg.getId());
@@ -78,7 +69,7 @@ public class ComunaServiceTest {
                 assertTrue(saved.stream().anyMatch(c -> c.getId() == i))
         );
 
-        // Act: Call real service (uses mocked repo and mapper)
+        // Act: Call real service (uses mocked repo and generated mapper)
         List<ComunaDto> loaded = comunaService.findByRegion(reg.getId());
 
         // Assert: DTOs from mapping
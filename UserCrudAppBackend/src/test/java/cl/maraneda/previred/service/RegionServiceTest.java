@@ -1,14 +1,24 @@
 package cl.maraneda.previred.service;
 
+import cl.maraneda.previred.dto.ComunaRow;
+import cl.maraneda.previred.dto.RegionDeleteResultDto;
 import cl.maraneda.previred.dto.RegionDto;
+import cl.maraneda.previred.mapper.ReferenceMapper;
 import cl.maraneda.previred.model.Region;
+import cl.maraneda.previred.repository.ComunaRepository;
 import cl.maraneda.previred.repository.RegionRepository;
+import cl.maraneda.previred.repository.UserRepository;
+import cl.maraneda.previred.util.ReferenceSnapshot;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mapstruct.factory.Mappers;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.modelmapper.ModelMapper;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Sort;
 
 import java.util.Arrays;
@@ -18,8 +28,12 @@ import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
-import static org.mockito.ArgumentMatchers.eq;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -31,7 +45,28 @@ public class RegionServiceTest {
     public transient RegionRepository regionRepository;
 
     @Mock
-    public transient ModelMapper mapper;
+    public transient ComunaRepository comunaRepository;
+
+    @Mock
+    public transient UserRepository userRepository;
+
+    @Mock
+    public transient ReferenceDataService referenceDataService;
+
+    @Mock
+    public transient ApplicationEventPublisher eventPublisher;
+
+    @Spy
+    public transient ReferenceMapper mapper = Mappers.getMapper(ReferenceMapper.class);
+
+    private static ReferenceSnapshot referencia(){
+        return ReferenceSnapshot.of(
+            List.of(RegionDto.builder().id("I").nombre("Region de Tarapaca").build(),
+                    RegionDto.builder().id("II").nombre("Region de Antofagasta").build()),
+            List.of(new ComunaRow(1, "Iquique", "I"), new ComunaRow(2, "Alto Hospicio", "I"),
+                    new ComunaRow(3, "Antofagasta", "II")),
+            new ObjectMapper());
+    }
 
     @Test
     void testingObtainAllRegions(){
@@ -57,10 +92,6 @@ public class RegionServiceTest {
         Sort s = Sort.by(Sort.Direction.ASC, "orden");
         when(regionRepository.saveAll(regs)).thenReturn(regs);
         when(regionRepository.findAll(eq(s))).thenReturn(regs);
-        when(mapper.map(any(Region.class), eq(RegionDto.class))).thenAnswer(i -> {
-            Region r = i.getArgument(0);
-            return RegionDto.builder().id(r.getId()).nombre(r.getNombre()).build();
-        });
 
         List<Region> saved = regionRepository.saveAll(regs);
 
@@ -73,4 +104,53 @@ public class RegionServiceTest {
                          regs.stream().filter(r -> r.getOrden()==i+1).findFirst().orElseThrow().getId())
         );
     }
+
+    @Test
+    void whenDeletingRegionShouldDeleteUsersComunasAndRegionWithBulkStatements(){
+        when(regionRepository.existsById("I")).thenReturn(true);
+        when(userRepository.deleteByRegion("I")).thenReturn(25_000);
+        when(comunaRepository.deleteByRegion("I")).thenReturn(2);
+
+        RegionDeleteResultDto resultado = regionService.deleteRegion("I", null);
+
+        assertEquals("I", resultado.getRegion());
+        assertEquals(2, resultado.getComunasEliminadas());
+        assertEquals(25_000, resultado.getUsuariosEliminados());
+        assertEquals(0, resultado.getUsuariosReasignados());
+        verify(userRepository, never()).moveRegion(any(), any());
+        verify(regionRepository).deleteByIdBulk("I");
+        verify(eventPublisher).publishEvent(UsersChangedEvent.desconocidos());
+        /*Las comunas salen de la foto y se bloquean antes de las sentencias por conjunto*/
+        InOrder orden = inOrder(referenceDataService, comunaRepository, userRepository);
+        orden.verify(referenceDataService).retirarRegion("I");
+        orden.verify(comunaRepository).lockByRegion("I");
+        orden.verify(userRepository).deleteByRegion("I");
+    }
+
+    @Test
+    void whenDeletingRegionWithDestinationShouldMoveUsers(){
+        when(regionRepository.existsById("I")).thenReturn(true);
+        when(referenceDataService.snapshot()).thenReturn(referencia());
+        when(comunaRepository.lockExisting(List.of(3))).thenReturn(List.of(3));
+        when(userRepository.moveRegion(eq("I"), any())).thenReturn(10);
+        when(comunaRepository.deleteByRegion("I")).thenReturn(2);
+
+        RegionDeleteResultDto resultado = regionService.deleteRegion("I", 3);
+
+        assertEquals(10, resultado.getUsuariosReasignados());
+        assertEquals(0, resultado.getUsuariosEliminados());
+        assertEquals(3, resultado.getComunaDestino());
+        verify(comunaRepository).getReferenceById(3);
+        verify(userRepository, never()).deleteByRegion(any());
+    }
+
+    @Test
+    void whenDeletingRegionWithDestinationInsideItShouldFail(){
+        when(regionRepository.existsById("I")).thenReturn(true);
+        when(referenceDataService.snapshot()).thenReturn(referencia());
+
+        assertThrows(IllegalArgumentException.class, () -> regionService.deleteRegion("I", 2));
+        assertThrows(IllegalArgumentException.class, () -> regionService.deleteRegion("I", 99));
+        verify(regionRepository, never()).deleteByIdBulk(any());
+    }
 }
@@ -0,0 +1,81 @@
+package cl.maraneda.previred.service;
+
+import cl.maraneda.previred.dto.ConteoDto;
+import cl.maraneda.previred.dto.UserDto;
+import cl.maraneda.previred.util.Util;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Los contadores se ajustan con los valores anteriores que trae cada cambio: la reconstruccion diferida se
+ * deja tan lejos que, si los conteos cambian, es porque se restaron y sumaron sin volver a contar
+ */
+@SpringBootTest(properties = "previred.count.rebuild-delay-ms=600000")
+public class UserCountServiceTest {
+    private static final String REGION = "XIII";
+    private static final int PUTRE = 3;
+    private static final int GENERAL_LAGOS = 4;
+    private static final int[] TRAMOS = {18};
+
+    @Autowired
+    private transient UserService userService;
+
+    @Autowired
+    private transient UserCountService userCountService;
+
+    private ConteoDto<Integer> conteo(int comuna){
+        return userCountService.porComuna(REGION, TRAMOS).stream()
+                               .filter(c -> c.getId() == comuna)
+                               .findFirst()
+                               .orElseThrow();
+    }
+
+    private static UserDto usuario(String rut, LocalDate fechaNacimiento, int comuna){
+        return UserDto.builder()
+                      .rut(rut)
+                      .nombre("Test").apellido("Conteo")
+                      .fechaNacimiento(fechaNacimiento.toString())
+                      .calle("Calle de prueba")
+                      .comuna(comuna)
+                      .build();
+    }
+
+    @Test
+    public void whenInsertingMovingAndDeletingUserThenCountsShouldFollow(){
+        String rut = Util.getRamdomRut();
+        long putre = conteo(PUTRE).getUsuarios();
+        long generalLagos = conteo(GENERAL_LAGOS).getUsuarios();
+
+        userService.save(usuario(rut, LocalDate.of(1980, 5, 10), PUTRE));
+        assertEquals(putre + 1, conteo(PUTRE).getUsuarios());
+        assertEquals(generalLagos, conteo(GENERAL_LAGOS).getUsuarios());
+
+        userService.update(usuario(rut, LocalDate.of(1980, 5, 10), GENERAL_LAGOS));
+        assertEquals(putre, conteo(PUTRE).getUsuarios());
+        assertEquals(generalLagos + 1, conteo(GENERAL_LAGOS).getUsuarios());
+
+        userService.delete(rut);
+        assertEquals(putre, conteo(PUTRE).getUsuarios());
+        assertEquals(generalLagos, conteo(GENERAL_LAGOS).getUsuarios());
+    }
+
+    @Test
+    public void whenBirthdayIsTomorrowThenUserShouldStayInPreviousAgeBucket(){
+        String rut = Util.getRamdomRut();
+        Map<String, Long> antes = conteo(PUTRE).getPorEdad();
+        userService.save(usuario(rut, LocalDate.now().plusDays(1).minusYears(18), PUTRE));
+        try{
+            Map<String, Long> despues = conteo(PUTRE).getPorEdad();
+            assertEquals(antes.get("0-17") + 1, despues.get("0-17"));
+            assertEquals(antes.get("18+"), despues.get("18+"));
+        }finally{
+            userService.delete(rut);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package cl.maraneda.previred.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class PrefixIndexTest {
+
+    @Test
+    void whenSearchingShouldIgnoreAccentsAndCase(){
+        PrefixIndex indice = new PrefixIndex();
+        List.of("José", "Josefina", "Juan", "Ñuñoa", "Ángela", "jose").forEach(indice::agregar);
+
+        assertEquals(List.of("José", "Josefina"), indice.buscar("JOSE", 10));
+        assertEquals(List.of("José", "Josefina"), indice.buscar("jos", 10));
+        assertEquals(List.of("Ñuñoa"), indice.buscar("nu", 10));
+        assertEquals(List.of("Ángela"), indice.buscar("  ang", 10));
+        assertEquals(5, indice.size());
+    }
+
+    @Test
+    void whenSearchingShouldRespectLimitAndAlphabeticalOrder(){
+        PrefixIndex indice = new PrefixIndex();
+        List.of("Marta", "Mario", "Maria", "Marcela", "Manuel", "Pedro").forEach(indice::agregar);
+
+        assertEquals(List.of("Marcela", "Maria"), indice.buscar("mar", 2));
+        assertEquals(List.of(), indice.buscar("x", 10));
+        assertEquals(List.of(), indice.buscar("", 10));
+        assertEquals(List.of(), indice.buscar("mar", 0));
+    }
+
+    @Test
+    void whenSearchingShouldReturnNamesWithMostUsersFirst(){
+        PrefixIndex indice = new PrefixIndex();
+        indice.agregar("Marcela", 1);
+        indice.agregar("Maria", 5);
+        indice.agregar("Mario", 3);
+        indice.agregar("Marta", 3);
+        indice.agregar("Pedro", 10);
+
+        assertEquals(List.of("Maria", "Mario"), indice.buscar("mar", 2));
+        assertEquals(List.of("Maria", "Mario", "Marta", "Marcela"), indice.buscar("mar", 10));
+        indice.quitar("Maria");
+        indice.quitar("Maria");
+        indice.quitar("Maria");
+        assertEquals(List.of("Mario", "Marta", "Maria"), indice.buscar("mar", 3));
+    }
+}
@@ -0,0 +1,49 @@
+package cl.maraneda.previred.util;
+
+import cl.maraneda.previred.dto.ComunaRow;
+import cl.maraneda.previred.dto.RegionDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ReferenceSnapshotTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final List<RegionDto> REGIONES =
+        List.of(RegionDto.builder().id("XV").nombre("Arica y Parinacota").build(),
+                RegionDto.builder().id("I").nombre("Tarapaca").build());
+
+    @Test
+    void whenComunaIdsAreSparseShouldStillAnswerLookups(){
+        ReferenceSnapshot foto = ReferenceSnapshot.of(REGIONES,
+            List.of(new ComunaRow(1, "Arica", "XV"),
+                    new ComunaRow(Integer.MAX_VALUE, "Iquique", "I"),
+                    new ComunaRow(-5, "Pica", "I")),
+            MAPPER);
+
+        assertEquals("I", foto.regionDeComuna(Integer.MAX_VALUE));
+        assertEquals("Pica", foto.nombreComuna(-5));
+        assertEquals("XV", foto.regionDeComuna(1));
+        assertFalse(foto.existeComuna(2));
+        assertEquals(2, foto.comunas("I").size());
+        assertFalse(foto.sinRegion("XV", MAPPER).existeComuna(1));
+        assertTrue(foto.sinRegion("XV", MAPPER).existeComuna(Integer.MAX_VALUE));
+    }
+
+    @Test
+    void whenComunaHasNoRegionShouldExistWithoutRegion(){
+        ReferenceSnapshot foto = ReferenceSnapshot.of(REGIONES,
+            List.of(new ComunaRow(1, "Arica", "XV"), new ComunaRow(2, "Sin region", null)),
+            MAPPER);
+
+        assertTrue(foto.existeComuna(2));
+        assertNull(foto.regionDeComuna(2));
+        assertEquals("Sin region", foto.nombreComuna(2));
+        assertTrue(foto.sinRegion("XV", MAPPER).existeComuna(2));
+    }
+}
@@ -0,0 +1,68 @@
+package cl.maraneda.previred.util;
+
+import cl.maraneda.previred.exceptions.RUTException;
+import cl.maraneda.previred.exceptions.RutRuntimeException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RutCodecTest {
+    @Test
+    void whenParsingValidRutInBothFormatsShouldObtainSamePackedValue(){
+        long plano = RutCodec.parse("12345678-5");
+        long conPuntos = RutCodec.parse("12.345.678-5");
+        assertTrue(RutCodec.isValid(plano));
+        assertEquals(plano, conPuntos);
+        assertEquals(12345678, RutCodec.cuerpo(plano));
+        assertEquals('5', RutCodec.digito(plano));
+    }
+
+    @Test
+    void whenParsingLowercaseKShouldNormalizeToUppercase(){
+        long rut = RutCodec.parse("10000013-k");
+        assertTrue(RutCodec.isValid(rut));
+        assertEquals('K', RutCodec.digito(rut));
+        assertEquals("10000013-K", RutCodec.toString(rut));
+    }
+
+    @Test
+    void whenParsingMalformedRutShouldObtainErrorCode(){
+        assertEquals(RutCodec.SIN_GUION, RutCodec.parse("123456785"));
+        assertEquals(RutCodec.DIGITO_INVALIDO, RutCodec.parse("12345678-X"));
+        assertEquals(RutCodec.CARACTER_INVALIDO, RutCodec.parse("1234a678-5"));
+        assertEquals(RutCodec.CARACTER_INVALIDO, RutCodec.parse("1..234.567-8"));
+        assertEquals(RutCodec.CARACTER_INVALIDO, RutCodec.parse(".123.456-K"));
+        assertEquals(RutCodec.CARACTER_INVALIDO, RutCodec.parse("1234.567-4"));
+        assertEquals(RutCodec.CARACTER_INVALIDO, RutCodec.parse("12.345678-5"));
+        assertEquals(RutCodec.CARACTER_INVALIDO, RutCodec.parse("12345.678-5"));
+        assertEquals(RutCodec.DEMASIADOS_DIGITOS, RutCodec.parse("1234567890-1"));
+        assertEquals(RutCodec.NO_CORRESPONDE, RutCodec.parse("12345678-4"));
+        assertEquals(RutCodec.SIN_DIGITOS, RutCodec.parse("-5"));
+        assertFalse(RutCodec.isValid((CharSequence) null));
+    }
+
+    @Test
+    void whenFormattingShouldWriteBothFormats(){
+        assertEquals("1-9", RutCodec.toString(RutCodec.parse("1-9")));
+        assertEquals("1-9", RutCodec.toFormattedString(RutCodec.parse("1-9")));
+        assertEquals("123.456-0", RutCodec.toFormattedString(RutCodec.parse("123456-0")));
+        assertEquals("1.234.567-4", RutCodec.toFormattedString(RutCodec.parse("1234567-4")));
+        assertEquals("123.456.789-2", RutCodec.toFormattedString(RutCodec.parse("123456789-2")));
+        assertEquals("12345678-5", RutCodec.toString(RutCodec.parse("12.345.678-5")));
+    }
+
+    @Test
+    void whenBuildingRutWrapperShouldKeepLegacyBehaviour() throws RUTException{
+        RUT rut = new RUT("12.345.678-5");
+        assertEquals("12345678-5", rut.toString());
+        assertEquals("12.345.678-5", rut.getFormated());
+        assertEquals("12345678", rut.getPure());
+        assertEquals('5', rut.getDigito());
+        assertEquals(new RUT("12345678-5"), rut);
+        assertThrows(RUTException.class, () -> new RUT("12345678-4"));
+        assertThrows(RutRuntimeException.class, () -> new RUT("1..234.567-4"));
+    }
+}
@@ -0,0 +1,102 @@
+package cl.maraneda.previred.util;
+
+import cl.maraneda.previred.dto.UserDto;
+import cl.maraneda.previred.dto.UserSearchRow;
+import cl.maraneda.previred.model.Comuna;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class UtilTest {
+    private static final int HILOS = 64;
+    private static final int ITERACIONES = 2_000;
+
+    @Test
+    void whenParsingDateWithTrailingTextShouldIgnoreIt(){
+        assertEquals(LocalDate.of(2000, 2, 29), Util.parseFechaNacimiento("2000-02-29"));
+        assertEquals(LocalDate.of(1985, 7, 3), Util.parseFechaNacimiento("1985-07-03 (40) años"));
+    }
+
+    @Test
+    void whenMappingUserWithWrongDateFormatShouldThrowIllegalArgumentException(){
+        UserDto dto = UserDto.builder().rut("1-9").nombre("Test").apellido("Test")
+                .calle("Calle").fechaNacimiento("03/07/1985").comuna(1).build();
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> Util.mapToUser(dto, Comuna.builder().id(1).build()));
+        assertEquals("Formato de fecha distinto de yyyy-MM-dd", e.getMessage());
+    }
+
+    @Test
+    void whenComputingAgeShouldMatchPeriodBetween(){
+        LocalDate referencia = LocalDate.now().plusDays(1L);
+        for(LocalDate fecha = LocalDate.of(1996, 1, 1); fecha.isBefore(referencia.plusYears(2)); fecha = fecha.plusDays(1)){
+            assertEquals(Period.between(fecha, referencia).getYears(), Edad.anios(fecha), fecha.toString());
+        }
+    }
+
+    @Test
+    void whenSerializingSearchRowShouldWriteSameFieldsAsSearchResultDto() throws Exception{
+        ObjectMapper mapper = new ObjectMapper();
+        UserSearchRow fila = new UserSearchRow("1-9", "José", "Pérez", LocalDate.of(1985, 7, 3), "Calle \"1\"", 5, "Comuna", "RM");
+        JsonNode esperado = mapper.valueToTree(Util.mapToSearchDto(fila));
+        ((ObjectNode) esperado).remove("criteria");
+        assertEquals(esperado, mapper.readTree(mapper.writeValueAsString(fila)));
+        assertEquals("03/07/0985 (" + Util.getYears(LocalDate.of(985, 7, 3)) + " años)",
+                     UserSearchRowSerializer.formatoBusqueda(LocalDate.of(985, 7, 3)));
+    }
+
+    /*Con los antiguos SimpleDateFormat compartidos este test obtenia fechas cruzadas entre hilos*/
+    @Test
+    void whenFormattingDatesConcurrentlyShouldObtainExactValues() throws Exception{
+        ExecutorService pool = Executors.newFixedThreadPool(HILOS);
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<Integer>> resultados = new ArrayList<>();
+        try{
+            for(int h = 0; h < HILOS; h++){
+                final int hilo = h;
+                resultados.add(pool.submit(() -> {
+                    largada.await();
+                    int errores = 0;
+                    for(int i = 0; i < ITERACIONES; i++){
+                        LocalDate fecha = LocalDate.of(1940, 1, 1).plusDays(hilo * 311L + i * 7L);
+                        String entrada = String.format("%04d-%02d-%02d",
+                                fecha.getYear(), fecha.getMonthValue(), fecha.getDayOfMonth());
+                        String salida = String.format("%02d/%02d/%04d (%d años)",
+                                fecha.getDayOfMonth(), fecha.getMonthValue(), fecha.getYear(), Util.getYears(fecha));
+
+                        UserSearchRow fila = new UserSearchRow("1-9", "Test", "Test", fecha, "Calle", 1, "Comuna", "1");
+                        if(!salida.equals(Util.mapToSearchDto(fila).getFechaNacimiento())){
+                            errores++;
+                        }
+                        if(!fecha.equals(Util.parseFechaNacimiento(entrada))){
+                            errores++;
+                        }
+                    }
+                    return errores;
+                }));
+            }
+            largada.countDown();
+            for(Future<Integer> r : resultados){
+                assertEquals(0, r.get(60, TimeUnit.SECONDS));
+            }
+        }finally{
+            pool.shutdownNow();
+            assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+}
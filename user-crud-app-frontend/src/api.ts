@@ -24,34 +24,31 @@ const addToQueue = (action: PendingAction) => {
   setQueue(queue);
 };
 
-const processQueueItem = async (action: PendingAction): Promise<boolean> => {
-  const headers = { 'Content-Type': 'application/json' };
-  try {
-    if (action.type === 'create') {
-      const res = await fetch(`${API_BASE}/user/`, { method: 'PUT', headers, body: JSON.stringify(action.payload) });
-      return res.ok;
-    } else if (action.type === 'update') {
-      const res = await fetch(`${API_BASE}/user/${action.id}`, { method: 'PUT', headers, body: JSON.stringify(action.payload) });
-      return res.ok;
-    } else if (action.type === 'delete') {
-      const res = await fetch(`${API_BASE}/user/${action.id}`, { method: 'DELETE' });
-      return res.ok;
-    }
-    return false;
-  } catch {
-    return false;
-  }
-};
+interface SyncResult {
+  procesados: number;
+  exitosos: number;
+  rechazados: number;
+  resultados: { indice: number; rut?: string; estado: string; mensaje?: string }[];
+}
 
+// Se envia la cola completa en una sola peticion; el backend devuelve un resultado por accion, en el mismo orden
 const processQueue = async () => {
   const queue = getQueue();
-  let i = 0;
-  while (i < queue.length) {
-    const success = await processQueueItem(queue[i]);
-    if (success) queue.splice(i, 1);
-    else i++;
+  if (queue.length === 0) return;
+  try {
+    const res = await fetch(`${API_BASE}/user/sync`, {
+      method: 'POST',
+      headers: { 'Content-Type': 'application/json' },
+      body: JSON.stringify(queue),
+    });
+    if (!res.ok) return;
+    const data = await res.json() as SyncResult;
+    const rechazadas = new Set(data.resultados.filter(r => r.estado === 'RECHAZADO').map(r => r.indice));
+    // Las acciones agregadas mientras se sincronizaba se mantienen en la cola
+    setQueue([...queue.filter((_, i) => rechazadas.has(i)), ...getQueue().slice(queue.length)]);
+  } catch {
+    // Sin conexion: la cola se vuelve a enviar en el proximo evento online
   }
-  setQueue(queue);
 };
 
 const syncIfOnline = () => navigator.onLine && processQueue();